@@ -0,0 +1,87 @@
+
+/*******************************************************************************
+ * @file  FileListBenchmark.java
+ */
+
+package database1;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Cost of FileList.add (appending) and FileList.get in sequential and random
+ * order over a list of movie records.  Run with -jvmArgs -Ddatabase1.compress=true
+ * to measure compressed pages.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class FileListBenchmark
+{
+    @Param ({ "10000", "100000" })
+    int size;
+
+    private MovieTables   tables;
+    private FileList      list;
+    private FileList      appended;
+    private Comparable [] tuple;
+    private int []        random;
+    private int           seq, rnd;
+
+    @Setup (Level.Trial)
+    public void setUp ()
+    {
+        tables = new MovieTables ();
+        Table movie = tables.movieTable ("bench_filelist");
+        list = new FileList (movie, movie.tupleSize ());
+        for (int i = 0; i < size; i++) list.add (MovieTables.movie (i, 100));
+        random = new int [1 << 16];
+        Random r = new Random (42);
+        for (int i = 0; i < random.length; i++) random [i] = r.nextInt (size);
+        tuple = MovieTables.movie (size, 100);
+    } // setUp
+
+    @Setup (Level.Iteration)
+    public void newList ()
+    {
+        Table appendTo = tables.movieTable ("bench_filelist_add");
+        appended = new FileList (appendTo, appendTo.tupleSize ());
+    } // newList
+
+    @TearDown (Level.Iteration)
+    public void closeList ()
+    {
+        appended.close ();
+    } // closeList
+
+    @TearDown (Level.Trial)
+    public void tearDown ()
+    {
+        list.close ();
+        tables.cleanUp ();
+    } // tearDown
+
+    @Benchmark
+    public boolean add ()
+    {
+        return appended.add (tuple);
+    } // add
+
+    @Benchmark
+    public Comparable [] getSequential ()
+    {
+        if (seq == size) seq = 0;
+        return list.get (seq++);
+    } // getSequential
+
+    @Benchmark
+    public Comparable [] getRandom ()
+    {
+        return list.get (random [rnd++ & (random.length - 1)]);
+    } // getRandom
+
+} // FileListBenchmark class
@@ -0,0 +1,50 @@
+
+/*******************************************************************************
+ * @file  InsertBenchmark.java
+ */
+
+package database1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Throughput of Table.insert into a movie table that starts each iteration
+ * with the given number of rows.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+public class InsertBenchmark
+{
+    @Param ({ "0", "100000" })
+    int size;
+
+    private MovieTables tables;
+    private Table       movie;
+    private int         next;
+
+    @Setup (Level.Iteration)
+    public void setUp ()
+    {
+        tables = new MovieTables ();
+        movie  = tables.movies ("bench_insert", 0, size, 100);
+        next   = size;
+    } // setUp
+
+    @TearDown (Level.Iteration)
+    public void tearDown ()
+    {
+        tables.cleanUp ();
+    } // tearDown
+
+    @Benchmark
+    public boolean insert ()
+    {
+        return movie.insert (MovieTables.movie (next++, 100));
+    } // insert
+
+} // InsertBenchmark class
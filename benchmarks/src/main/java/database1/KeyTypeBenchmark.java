@@ -0,0 +1,49 @@
+
+/*******************************************************************************
+ * @file  KeyTypeBenchmark.java
+ */
+
+package database1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Cost of comparing and hashing keys: a composite movie key (title year) and
+ * single Integer and String keys.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class KeyTypeBenchmark
+{
+    private KeyType movie1, movie2, int1, int2, string1, string2;
+
+    @Setup
+    public void setUp ()
+    {
+        movie1  = KeyType.of (new Comparable [] { "Movie_12345", 1977 });
+        movie2  = KeyType.of (new Comparable [] { "Movie_12345", 1980 });
+        int1    = KeyType.of (new Comparable [] { 12345 });
+        int2    = KeyType.of (new Comparable [] { 12346 });
+        string1 = KeyType.of (new Comparable [] { new String ("Star_12345") });
+        string2 = KeyType.of (new Comparable [] { new String ("Star_12346") });
+    } // setUp
+
+    @Benchmark public int compareComposite () { return movie1.compareTo (movie2); }
+    @Benchmark public int compareInteger ()   { return int1.compareTo (int2); }
+    @Benchmark public int compareString ()    { return string1.compareTo (string2); }
+
+    @Benchmark
+    public int hashComposite ()
+    {
+        return KeyType.of (new Comparable [] { "Movie_12345", 1977 }).hashCode ();   // uncached, as for a new key
+    } // hashComposite
+
+    @Benchmark public int hashInteger ()      { return int1.hashCode (); }
+    @Benchmark public boolean equalsComposite () { return movie1.equals (movie2); }
+
+} // KeyTypeBenchmark class
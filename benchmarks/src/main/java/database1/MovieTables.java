@@ -0,0 +1,107 @@
+
+/*******************************************************************************
+ * @file  MovieTables.java
+ */
+
+package database1;
+
+import java.io.File;
+import java.util.*;
+
+/*******************************************************************************
+ * This class builds tables of the MovieDB schema filled with deterministic
+ * synthetic rows for the benchmarks, and removes their data files afterwards.
+ */
+class MovieTables
+{
+    static final String [] GENRES = { "action", "comedy", "drama", "sciFi", "horror", "romance" };
+
+    /** The tables created (whose data files are deleted by cleanUp).
+     */
+    private final List <Table> created = new ArrayList <> ();
+
+    /***************************************************************************
+     * Return a movie tuple for row i (titles are unique per i).
+     * @param i        the row number
+     * @param studios  the number of studios to spread the movies over
+     * @return  the tuple (title year length genre studioName producerNo)
+     */
+    static Comparable [] movie (int i, int studios)
+    {
+        return new Comparable [] { "Movie_" + i, 1950 + i % 70, 80 + i % 100, GENRES [i % GENRES.length],
+                                   "Studio_" + i % studios, 10000 + i };
+    } // movie
+
+    /***************************************************************************
+     * Create an empty movie table (or cinema table, with the same schema).
+     * @param name  the table name
+     * @return  the table
+     */
+    Table movieTable (String name)
+    {
+        return track (new Table (name, "title year length genre studioName producerNo",
+                                       "String Integer Integer String String Integer", "title year"));
+    } // movieTable
+
+    /***************************************************************************
+     * Create a movie table holding rows [from, from + n).
+     */
+    Table movies (String name, int from, int n, int studios)
+    {
+        Table t = movieTable (name);
+        for (int i = from; i < from + n; i++) t.insert (movie (i, studios));
+        return t;
+    } // movies
+
+    /***************************************************************************
+     * Create a studio table with the given number of studios.
+     */
+    Table studios (String name, int n)
+    {
+        Table t = track (new Table (name, "name address presNo", "String String Integer", "name"));
+        for (int i = 0; i < n; i++) t.insert (new Comparable [] { "Studio_" + i, "City_" + i % 17, 20000 + i });
+        return t;
+    } // studios
+
+    /***************************************************************************
+     * Create a movieStar table with n stars.
+     */
+    Table stars (String name, int n)
+    {
+        Table t = track (new Table (name, "name address gender birthdate", "String String Character String", "name"));
+        for (int i = 0; i < n; i++) {
+            t.insert (new Comparable [] { "Star_" + i, "City_" + i % 17, i % 2 == 0 ? 'F' : 'M', (1 + i % 12) + "/1/70" });
+        } // for
+        return t;
+    } // stars
+
+    /***************************************************************************
+     * Create a starsIn table casting star i % stars in movie i.
+     */
+    Table starsIn (String name, int movies, int stars)
+    {
+        Table t = track (new Table (name, "movieTitle movieYear starName", "String Integer String",
+                                          "movieTitle movieYear starName"));
+        for (int i = 0; i < movies; i++) t.insert (new Comparable [] { "Movie_" + i, 1950 + i % 70, "Star_" + i % stars });
+        return t;
+    } // starsIn
+
+    /***************************************************************************
+     * Close the tables created and delete their data files.
+     */
+    void cleanUp ()
+    {
+        for (Table t : created) {
+            t.close ();
+            new File (t.getName () + ".dat").delete ();
+        } // for
+        created.clear ();
+    } // cleanUp
+
+    private Table track (Table t)
+    {
+        created.add (t);
+        return t;
+    } // track
+
+} // MovieTables class
@@ -0,0 +1,54 @@
+
+/*******************************************************************************
+ * @file  PackBenchmark.java
+ */
+
+package database1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Cost of packing a movie tuple into a fixed-size record and unpacking it.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class PackBenchmark
+{
+    private MovieTables   tables;
+    private Table         movie;
+    private Comparable [] tuple;
+    private byte []       record;
+
+    @Setup
+    public void setUp ()
+    {
+        tables = new MovieTables ();
+        movie  = tables.movieTable ("bench_pack");
+        tuple  = MovieTables.movie (12345, 100);
+        record = movie.pack (tuple);
+    } // setUp
+
+    @TearDown
+    public void tearDown ()
+    {
+        tables.cleanUp ();
+    } // tearDown
+
+    @Benchmark
+    public byte [] pack ()
+    {
+        return movie.pack (tuple);
+    } // pack
+
+    @Benchmark
+    public Comparable [] unpack ()
+    {
+        return movie.unpack (record);
+    } // unpack
+
+} // PackBenchmark class
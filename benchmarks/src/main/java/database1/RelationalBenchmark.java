@@ -0,0 +1,104 @@
+
+/*******************************************************************************
+ * @file  RelationalBenchmark.java
+ */
+
+package database1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Cost of the relational algebra operators of Table over MovieDB tables of the
+ * given size: movie (size rows), cinema (size rows, half of them also in
+ * movie), studio (size / 10 rows), movieStar (size / 4 rows) and starsIn (one
+ * star per movie).  Each benchmark returns the result's row count.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+public class RelationalBenchmark
+{
+    @Param ({ "1000", "10000", "100000" })
+    int size;
+
+    private MovieTables tables;
+    private Table       movie, cinema, studio, movieStar, starsIn;
+
+    @Setup (Level.Trial)
+    public void setUp ()
+    {
+        int studios = Math.max (1, size / 10);
+        tables    = new MovieTables ();
+        movie     = tables.movies ("bench_movie", 0, size, studios);
+        cinema    = tables.movies ("bench_cinema", size / 2, size, studios);
+        studio    = tables.studios ("bench_studio", studios);
+        movieStar = tables.stars ("bench_movieStar", Math.max (1, size / 4));
+        starsIn   = tables.starsIn ("bench_starsIn", size, Math.max (1, size / 4));
+    } // setUp
+
+    @TearDown (Level.Trial)
+    public void tearDown ()
+    {
+        tables.cleanUp ();
+    } // tearDown
+
+    @Benchmark
+    public int selectRange ()
+    {
+        return rows (movie.select ("year > 2000 & length < 120"));
+    } // selectRange
+
+    @Benchmark
+    public int selectKey ()
+    {
+        return rows (movie.select ("title == Movie_7"));
+    } // selectKey
+
+    @Benchmark
+    public int projectWithKey ()
+    {
+        return rows (movie.project ("title year genre"));
+    } // projectWithKey
+
+    @Benchmark
+    public int projectDistinct ()
+    {
+        return rows (movie.project ("genre studioName"));
+    } // projectDistinct
+
+    @Benchmark
+    public int union ()
+    {
+        return rows (movie.union (cinema));
+    } // union
+
+    @Benchmark
+    public int minus ()
+    {
+        return rows (movie.minus (cinema));
+    } // minus
+
+    @Benchmark
+    public int joinForeignKey ()
+    {
+        return rows (movie.join ("studioName == name", studio));
+    } // joinForeignKey
+
+    @Benchmark
+    public int joinStars ()
+    {
+        return rows (movieStar.join ("name == starName", starsIn));
+    } // joinStars
+
+    private static int rows (Table result)
+    {
+        int n = result.size ();
+        result.close ();
+        return n;
+    } // rows
+
+} // RelationalBenchmark class
@@ -0,0 +1,74 @@
+
+/*******************************************************************************
+ * @file  VectorBenchmark.java
+ */
+
+package database1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*******************************************************************************
+ * Selections that must scan the whole movie table (no zone map block can be
+ * skipped), run tuple at a time over the index or, in vectorized mode, on
+ * column batches read from the data file (see Table.setVectorized).  Each
+ * benchmark returns the result's row count.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+public class VectorBenchmark
+{
+    @Param ({ "10000", "100000" })
+    int size;
+
+    @Param ({ "false", "true" })
+    boolean vectorized;
+
+    private MovieTables tables;
+    private Table       movie;
+
+    @Setup (Level.Trial)
+    public void setUp ()
+    {
+        tables = new MovieTables ();
+        movie  = tables.movies ("bench_movie", 0, size, Math.max (1, size / 10));
+        Table.setVectorized (vectorized);
+    } // setUp
+
+    @TearDown (Level.Trial)
+    public void tearDown ()
+    {
+        Table.setVectorized (false);
+        tables.cleanUp ();
+    } // tearDown
+
+    @Benchmark
+    public int selectRange ()
+    {
+        return rows (movie.select ("year > 2000 & length < 120"));
+    } // selectRange
+
+    @Benchmark
+    public int selectString ()
+    {
+        return rows (movie.select ("genre == drama & year >= 1990"));
+    } // selectString
+
+    @Benchmark
+    public int pipeline ()
+    {
+        return rows (movie.scan ().select ("year > 2000 & length < 120").project ("title genre").materialize ());
+    } // pipeline
+
+    private static int rows (Table result)
+    {
+        int n = result.size ();
+        result.close ();
+        return n;
+    } // rows
+
+} // VectorBenchmark class
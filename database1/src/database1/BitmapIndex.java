@@ -0,0 +1,71 @@
+
+/*******************************************************************************
+ * @file  BitmapIndex.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class indexes a low-cardinality column (e.g., movieStar.gender or
+ * movie.genre) by keeping, for each distinct value, a compressed bitmap (see
+ * RoaringBitmap) of the record slots holding it.  Equality and inequality
+ * comparisons on the column then become bitmaps that Condition.candidates
+ * combines with AND / OR.  Character values are indexed as strings, the way
+ * conditions compare them.
+ */
+class BitmapIndex
+{
+    /** The bitmap of record slots for each value.
+     */
+    private final Map <Comparable, RoaringBitmap> bitmaps = new HashMap <> ();
+
+    /** The slots of all the records indexed.
+     */
+    private final RoaringBitmap all = new RoaringBitmap ();
+
+    /***************************************************************************
+     * Index the value held by the record in the given slot.
+     * @param slot   the record slot
+     * @param value  the record's value in the column
+     */
+    void add (int slot, Comparable value)
+    {
+        Comparable v = value instanceof Character ? value.toString () : value;
+        RoaringBitmap b = bitmaps.get (v);
+        if (b == null) bitmaps.put (v, b = new RoaringBitmap ());
+        b.add (slot);
+        all.add (slot);
+    } // add
+
+    /***************************************************************************
+     * Return the slots of the records holding the given value.
+     * @param value  the value (a Character column's as a string)
+     * @return  the bitmap of slots (empty if none)
+     */
+    RoaringBitmap get (Comparable value)
+    {
+        RoaringBitmap b = bitmaps.get (value instanceof Character ? value.toString () : value);
+        return b == null ? new RoaringBitmap () : b;
+    } // get
+
+    /***************************************************************************
+     * Return the slots of all the records indexed.
+     * @return  the bitmap of slots
+     */
+    RoaringBitmap all ()
+    {
+        return all;
+    } // all
+
+    /***************************************************************************
+     * Return the number of distinct values indexed.
+     * @return  the distinct count
+     */
+    int distinct ()
+    {
+        return bitmaps.size ();
+    } // distinct
+
+} // BitmapIndex class
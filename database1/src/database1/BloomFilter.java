@@ -0,0 +1,108 @@
+
+/*******************************************************************************
+ * @file  BloomFilter.java
+ */
+
+package database1;
+
+/*******************************************************************************
+ * This class implements a Bloom filter over hash codes: a compact bit set that
+ * answers "definitely absent" or "maybe present".  With 10 bits per value and
+ * 7 probes (by double hashing), about 1% of absent values are reported as maybe
+ * present.  A filter is sized for a capacity; once full, its owner rebuilds it
+ * larger (see Table), since bits cannot be removed or spread out.
+ */
+class BloomFilter
+{
+    /** Number of bits per value and number of probes per value.
+     */
+    private static final int BITS_PER_VALUE = 10;
+    private static final int PROBES         = 7;
+
+    /** The bits (a power of two of them).
+     */
+    private final long [] bits;
+
+    /** Mask for taking a bit position modulo the number of bits.
+     */
+    private final int mask;
+
+    /** Number of values the filter is sized for and number added.
+     */
+    private final int capacity;
+    private int       count;
+
+    /***************************************************************************
+     * Construct an empty Bloom filter.
+     * @param _capacity  the number of values to size it for
+     */
+    BloomFilter (int _capacity)
+    {
+        capacity = Math.max (64, _capacity);
+        int nBits = Integer.highestOneBit (Math.min (1 << 29, capacity * BITS_PER_VALUE - 1)) << 1;
+        bits = new long [Math.max (1, nBits >>> 6)];
+        mask = nBits - 1;
+    } // constructor
+
+    /***************************************************************************
+     * Add a value, given its hash code.
+     * @param h  the value's hash code
+     */
+    void add (int h)
+    {
+        long x  = mix (h);
+        int  h1 = (int) x, h2 = (int) (x >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int b = (h1 + i * h2) & mask;
+            bits [b >>> 6] |= 1L << b;
+        } // for
+        count++;
+    } // add
+
+    /***************************************************************************
+     * Determine whether a value, given its hash code, may have been added.
+     * @param h  the value's hash code
+     * @return  false if it definitely was not added
+     */
+    boolean mightContain (int h)
+    {
+        long x  = mix (h);
+        int  h1 = (int) x, h2 = (int) (x >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int b = (h1 + i * h2) & mask;
+            if ((bits [b >>> 6] & 1L << b) == 0) return false;
+        } // for
+        return true;
+    } // mightContain
+
+    /***************************************************************************
+     * Determine whether the filter holds as many values as it was sized for.
+     * @return  whether it is full
+     */
+    boolean full ()
+    {
+        return count >= capacity;
+    } // full
+
+    /***************************************************************************
+     * Return the number of values the filter was sized for.
+     * @return  the capacity
+     */
+    int capacity ()
+    {
+        return capacity;
+    } // capacity
+
+    /***************************************************************************
+     * Spread a 32-bit hash code over 64 bits (MurmurHash3 finalizer).
+     */
+    private static long mix (int h)
+    {
+        long x = (h + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        x ^= x >>> 31;
+        x *= 0x94D049BB133111EBL;
+        x ^= x >>> 29;
+        return x;
+    } // mix
+
+} // BloomFilter class
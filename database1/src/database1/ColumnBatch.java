@@ -0,0 +1,396 @@
+
+/*******************************************************************************
+ * @file  ColumnBatch.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class holds a batch of up to CAPACITY consecutive records of a FileList
+ * for vectorized (batch at a time) selection.  The records are read packed,
+ * with one read per batch, and a column is decoded only when a predicate needs
+ * it: numeric columns into a long [] whose order matches compareTo on the
+ * boxed values (floating point values are mapped to sortable bit patterns),
+ * string columns into a String [].  A selection vector lists the rows still
+ * selected; each predicate compacts it with one tight loop over a primitive
+ * array, without boxing or per-tuple interpretation.  Only the rows left
+ * selected are finally unpacked (see value), so unused columns of rejected
+ * rows are never decoded.
+ */
+final class ColumnBatch
+{
+    /** Number of rows per batch.
+     *  May be set with -Ddatabase1.batchSize=n.
+     */
+    static final int CAPACITY = Math.max (1, Integer.getInteger ("database1.batchSize", 1024));
+
+    private static final int INT = 0, SHORT = 1, LONG = 2, FLOAT = 3, DOUBLE = 4, CHAR = 5, STRING = 6;
+
+    /** The type code of each column (decided once, not per value).
+     */
+    private final int [] type;
+
+    /** The byte offset of each column within a record (see Table.pack).
+     */
+    private final int [] offset;
+
+    /** The number of bytes per record.
+     */
+    private final int recordSize;
+
+    /** The packed records of the batch.
+     */
+    private final byte [] records;
+
+    /** The decoded numeric (sortable) and string columns (null until decoded).
+     */
+    private final long []   [] num;
+    private final String [] [] str;
+
+    /** Which columns have been decoded for the current batch.
+     */
+    private final boolean [] decoded;
+
+    /** The selection vector: the rows still selected are sel [0 .. size).
+     */
+    private final int [] sel = new int [CAPACITY];
+
+    /** The number of rows in the batch and of rows still selected.
+     */
+    private int rows;
+    private int size;
+
+    /***************************************************************************
+     * Construct an empty batch for records of the given domains.
+     * @param domain  the domain of each column
+     */
+    ColumnBatch (Class [] domain)
+    {
+        offset  = new int [domain.length];
+        type    = new int [domain.length];
+        int s   = 0;
+        for (int j = 0; j < domain.length; j++) {
+            offset [j] = s;
+            type [j]   = type (domain [j]);
+            s         += width (domain [j]);
+        } // for
+        recordSize = s;
+        records    = new byte [CAPACITY * recordSize];
+        num        = new long [domain.length] [];
+        str        = new String [domain.length] [];
+        decoded    = new boolean [domain.length];
+    } // constructor
+
+    /***************************************************************************
+     * Load the records from slot "from" on (up to CAPACITY of them) and select
+     * all of them.
+     * @param list  the file list to read from
+     * @param from  the slot of the first record
+     * @return  the number of records loaded (0 at the end of the list)
+     */
+    int load (FileList list, int from)
+    {
+        rows = size = list.records (from, CAPACITY, records);
+        for (int i = 0; i < rows; i++) sel [i] = i;
+        Arrays.fill (decoded, false);
+        return rows;
+    } // load
+
+    /***************************************************************************
+     * Return the number of rows still selected.
+     * @return  the selected row count
+     */
+    int size ()
+    {
+        return size;
+    } // size
+
+    /***************************************************************************
+     * Return the ith selected row (its position within the batch).
+     * @param i  the index into the selection vector
+     * @return  the row
+     */
+    int row (int i)
+    {
+        return sel [i];
+    } // row
+
+    //-------------------------- Predicates on Columns -------------------------
+
+    /***************************************************************************
+     * Keep the selected rows whose numeric column c compares to v as given.
+     * @param c   the column
+     * @param op  the comparison (a Condition operator code)
+     * @param v   the value, as given by sortable
+     */
+    void filter (int c, int op, long v)
+    {
+        long [] x   = longs (c);
+        int     neg = op == Condition.NE || op == Condition.GE || op == Condition.LE ? 1 : 0;  // as !EQ, !LT, !GT
+        int     k   = 0;
+        if (op == Condition.EQ || op == Condition.NE) {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] == v ? 1 : 0) ^ neg; }
+        } else if (op == Condition.LT || op == Condition.GE) {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] <  v ? 1 : 0) ^ neg; }
+        } else {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] >  v ? 1 : 0) ^ neg; }
+        } // if
+        size = k;
+    } // filter
+
+    /***************************************************************************
+     * Keep the selected rows whose numeric column c compares to column d as
+     * given (the columns have the same domain).
+     * @param c   the left column
+     * @param op  the comparison (a Condition operator code)
+     * @param d   the right column
+     */
+    void filterColumns (int c, int op, int d)
+    {
+        long [] x   = longs (c), y = longs (d);
+        int     neg = op == Condition.NE || op == Condition.GE || op == Condition.LE ? 1 : 0;
+        int     k   = 0;
+        if (op == Condition.EQ || op == Condition.NE) {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] == y [r] ? 1 : 0) ^ neg; }
+        } else if (op == Condition.LT || op == Condition.GE) {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] <  y [r] ? 1 : 0) ^ neg; }
+        } else {
+            for (int i = 0; i < size; i++) { int r = sel [i]; sel [k] = r; k += (x [r] >  y [r] ? 1 : 0) ^ neg; }
+        } // if
+        size = k;
+    } // filterColumns
+
+    /***************************************************************************
+     * Keep the selected rows whose String or Character column c compares to s
+     * as given.  Equality on a String column is checked on the packed bytes.
+     * @param c   the column
+     * @param op  the comparison (a Condition operator code)
+     * @param s   the string to compare with
+     */
+    void filter (int c, int op, String s)
+    {
+        if ((op == Condition.EQ || op == Condition.NE) && type [c] == STRING && ! decoded [c]) {
+            byte [] b = packable (s);
+            if (b != null) { filterBytes (c, op == Condition.NE ? 1 : 0, b); return; }
+        } // if
+
+        String [] x = strings (c);
+        int       k = 0;
+        for (int i = 0; i < size; i++) {
+            int r = sel [i];
+            if (holds (x [r].compareTo (s), op)) sel [k++] = r;
+        } // for
+        size = k;
+    } // filter
+
+    /***************************************************************************
+     * Keep the selected rows whose String or Character columns c and d compare
+     * as given.
+     * @param c   the left column
+     * @param op  the comparison (a Condition operator code)
+     * @param d   the right column
+     */
+    void filterStrings (int c, int op, int d)
+    {
+        String [] x = strings (c), y = strings (d);
+        int       k = 0;
+        for (int i = 0; i < size; i++) {
+            int r = sel [i];
+            if (holds (x [r].compareTo (y [r]), op)) sel [k++] = r;
+        } // for
+        size = k;
+    } // filterStrings
+
+    /***************************************************************************
+     * Keep the selected rows whose packed String column c is (neg = 0) or is
+     * not (neg = 1) the string with bytes b: the bytes match and the field
+     * ends after them.
+     */
+    private void filterBytes (int c, int neg, byte [] b)
+    {
+        int width = width (String.class), n = b.length, k = 0;
+        for (int i = 0; i < size; i++) {
+            int r = sel [i], p = r * recordSize + offset [c];
+            int j = 0;
+            while (j < n && records [p + j] == b [j]) j++;
+            int eq = j == n && (n == width || records [p + n] == 0) ? 1 : 0;
+            sel [k] = r;
+            k += eq ^ neg;
+        } // for
+        size = k;
+    } // filterBytes
+
+    //------------------------------ Decoding ----------------------------------
+
+    /***************************************************************************
+     * Return the value of column c in row r, exactly as Table.unpack would.
+     * @param r  the row
+     * @param c  the column
+     * @return  the value
+     */
+    Comparable value (int r, int c)
+    {
+        int p = r * recordSize + offset [c];
+        switch (type [c]) {
+        case INT:    return getInt (p);
+        case SHORT:  return (short) ((records [p] & 0xff) << 8 | records [p + 1] & 0xff);
+        case LONG:   return getLong (p);
+        case FLOAT:  return Float.intBitsToFloat (getInt (p));
+        case DOUBLE: return Double.longBitsToDouble (getLong (p));
+        case CHAR:   return new String (records, p, 2).charAt (0);
+        default:     return getString (p);
+        } // switch
+    } // value
+
+    /***************************************************************************
+     * Return numeric column c decoded for every row of the batch.
+     */
+    private long [] longs (int c)
+    {
+        if (decoded [c]) return num [c];
+        long [] x = num [c] == null ? num [c] = new long [CAPACITY] : num [c];
+        int     p = offset [c];
+        switch (type [c]) {
+        case INT:
+            for (int r = 0; r < rows; r++, p += recordSize) x [r] = getInt (p);
+            break;
+        case SHORT:
+            for (int r = 0; r < rows; r++, p += recordSize) x [r] = (short) ((records [p] & 0xff) << 8 | records [p + 1] & 0xff);
+            break;
+        case LONG:
+            for (int r = 0; r < rows; r++, p += recordSize) x [r] = getLong (p);
+            break;
+        case FLOAT:
+            for (int r = 0; r < rows; r++, p += recordSize) x [r] = sortable (Float.intBitsToFloat (getInt (p)));
+            break;
+        default:
+            for (int r = 0; r < rows; r++, p += recordSize) x [r] = sortable (Double.longBitsToDouble (getLong (p)));
+            break;
+        } // switch
+        decoded [c] = true;
+        return x;
+    } // longs
+
+    /***************************************************************************
+     * Return String or Character column c decoded (as strings) for every row
+     * of the batch.
+     */
+    private String [] strings (int c)
+    {
+        if (decoded [c]) return str [c];
+        String [] x = str [c] == null ? str [c] = new String [CAPACITY] : str [c];
+        for (int r = 0; r < rows; r++) x [r] = value (r, c).toString ();
+        decoded [c] = true;
+        return x;
+    } // strings
+
+    private int getInt (int p)
+    {
+        return (records [p] & 0xff) << 24 | (records [p + 1] & 0xff) << 16 | (records [p + 2] & 0xff) << 8
+               | records [p + 3] & 0xff;
+    } // getInt
+
+    private long getLong (int p)
+    {
+        return (long) getInt (p) << 32 | getInt (p + 4) & 0xffffffffL;
+    } // getLong
+
+    private String getString (int p)
+    {
+        int n = 0, width = width (String.class);
+        while (n < width && records [p + n] != 0) n++;
+        return new String (records, p, n);
+    } // getString
+
+    //------------------------------ Helpers -----------------------------------
+
+    /***************************************************************************
+     * Map a numeric value to a long whose signed order is that of compareTo on
+     * values of its type (for Float and Double: NaN last and -0.0 before 0.0).
+     * @param v  the value (Short, Integer, Long, Float or Double)
+     * @return  the sortable long
+     */
+    static long sortable (Comparable v)
+    {
+        if (v instanceof Float)  return sortable (((Float) v).floatValue ());
+        if (v instanceof Double) return sortable (((Double) v).doubleValue ());
+        return ((Number) v).longValue ();
+    } // sortable
+
+    private static long sortable (float f)
+    {
+        int b = Float.floatToIntBits (f);
+        return b ^ (b >> 31 & 0x7fffffff);
+    } // sortable
+
+    private static long sortable (double d)
+    {
+        long b = Double.doubleToLongBits (d);
+        return b ^ (b >> 63 & 0x7fffffffffffffffL);
+    } // sortable
+
+    /***************************************************************************
+     * Determine whether the domain is decoded into longs (see sortable).
+     * @param dom  the domain
+     * @return  whether it is numeric
+     */
+    static boolean numeric (Class dom)
+    {
+        return dom == Integer.class || dom == Short.class || dom == Long.class || dom == Float.class || dom == Double.class;
+    } // numeric
+
+    /***************************************************************************
+     * Return the packed bytes of s if equality with a packed String field can
+     * be decided on bytes alone (s is what the field unpacks to exactly when
+     * the field holds these bytes followed by a 0 or its end), else null.
+     */
+    private static byte [] packable (String s)
+    {
+        byte [] b = s.getBytes ();
+        if (b.length > width (String.class) || s.indexOf ('\0') >= 0 || s.indexOf ('\uFFFD') >= 0) return null;
+        return new String (b).equals (s) ? b : null;
+    } // packable
+
+    private static boolean holds (int cmp, int op)
+    {
+        switch (op) {
+        case Condition.EQ: return cmp == 0;
+        case Condition.NE: return cmp != 0;
+        case Condition.LT: return cmp <  0;
+        case Condition.LE: return cmp <= 0;
+        case Condition.GT: return cmp >  0;
+        default:           return cmp >= 0;
+        } // switch
+    } // holds
+
+    private static int type (Class dom)
+    {
+        switch (dom.getName ()) {
+        case "java.lang.Integer":   return INT;
+        case "java.lang.Short":     return SHORT;
+        case "java.lang.Long":      return LONG;
+        case "java.lang.Float":     return FLOAT;
+        case "java.lang.Double":    return DOUBLE;
+        case "java.lang.Character": return CHAR;
+        default:                    return STRING;
+        } // switch
+    } // type
+
+    /***************************************************************************
+     * Return the number of bytes a value of the domain takes in a record (as in
+     * Table.tupleSize).
+     */
+    private static int width (Class dom)
+    {
+        switch (dom.getName ()) {
+        case "java.lang.Long":
+        case "java.lang.Double":    return 8;
+        case "java.lang.String":    return 64;
+        case "java.lang.Character": return 2;
+        default:                    return 4;
+        } // switch
+    } // width
+
+} // ColumnBatch class
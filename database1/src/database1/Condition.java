@@ -0,0 +1,423 @@
+
+/*******************************************************************************
+ * @file  Condition.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class holds a selection condition compiled against a schema, so it can
+ * be checked against many tuples without re-tokenizing it, re-running
+ * infix2postfix or converting its literals (by reflection in String2Type.cons)
+ * for each one.  Each comparison is resolved to column positions, an operator
+ * code and either a pre-converted constant or a parameter "?" whose value is
+ * bound at execution time.  Evaluation follows Table.evalTup exactly: the
+ * postfix form is run on a small boolean stack (a conjunction simply checks
+ * its comparisons in turn), and Character columns are compared as strings.
+ */
+final class Condition
+{
+    static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5, AND = 6, OR = 7;
+
+    /** The condition that holds for every tuple.
+     */
+    static final Condition TRUE = new Condition (new int [0], null, null, null, null, new Class [0]);
+
+    /** Per step: an operator code (comparisons push a result, AND/OR pop two).
+     */
+    private final int [] op;
+
+    /** Per comparison step: the column on the left (-1 if a constant or parameter).
+     */
+    private final int [] lCol;
+
+    /** Per comparison step: the column on the right (-1 if a constant or parameter).
+     */
+    private final int [] rCol;
+
+    /** Per comparison step: the constant operand (null if a column or parameter).
+     */
+    private final Comparable [] constant;
+
+    /** Per comparison step: the parameter index of the operand (-1 if none).
+     */
+    private final int [] param;
+
+    /** The domain of each parameter (that of the column it is compared with).
+     */
+    private final Class [] paramDomain;
+
+    /** Whether the condition is a conjunction ("&" only) of comparisons.
+     */
+    private final boolean conjunction;
+
+    /** Most entries the evaluation stack holds (at most 64, see eval).
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private Condition (int [] _op, int [] _lCol, int [] _rCol, Comparable [] _constant, int [] _param,
+                       Class [] _paramDomain)
+    {
+        op = _op; lCol = _lCol; rCol = _rCol; constant = _constant; param = _param; paramDomain = _paramDomain;
+        boolean and = true;
+        int     top = 0;
+        for (int s = 0; s < op.length; s++) {
+            if (op [s] == OR) and = false;
+            top += op [s] < AND ? 1 : -1;
+            if (top < 1) throw new IllegalArgumentException ("Condition: malformed condition");
+            if (top > MAX_DEPTH) throw new IllegalArgumentException ("Condition: nested more than " + MAX_DEPTH + " deep");
+        } // for
+        conjunction = and;
+    } // constructor
+
+    /***************************************************************************
+     * Compile a condition (see Table.select for its syntax; "?" stands for a
+     * parameter) against the given schema.
+     * @param condition  the condition
+     * @param attr       the attribute names of the tuples to check
+     * @param dom        the attribute domains of the tuples to check
+     * @return  the compiled condition
+     */
+    static Condition compile (String condition, String [] attr, Class [] dom)
+    {
+        if (condition == null || condition.trim ().isEmpty ()) return TRUE;
+        String [] postfix = Table.infix2postfix (condition);
+
+        int n = postfix.length;
+        int []        _op    = new int [n], _lCol = new int [n], _rCol = new int [n], _param = new int [n];
+        Comparable [] _const = new Comparable [n];
+        List <Class>  pDom   = new ArrayList <> ();
+        int           steps  = 0;
+        Deque <String> operands = new ArrayDeque <> ();
+
+        for (String token : postfix) {
+            int code = opCode (token);
+            if (code == -1) { operands.push (token); continue; }
+            _op [steps] = code;
+            if (code < AND) {
+                if (operands.size () < 2) throw new IllegalArgumentException ("Condition: malformed condition: " + condition);
+                String t2 = operands.pop (), t1 = operands.pop ();
+                int    c1 = Table.columnPos (t1, attr), c2 = Table.columnPos (t2, attr);
+                _lCol [steps] = c1;
+                _rCol [steps] = c2;
+                _param [steps] = -1;
+                if (c1 == -1 && c2 == -1) {
+                    throw new IllegalArgumentException ("Condition: no attribute in comparison " + t1 + " " + token + " " + t2);
+                } // if
+                if (c1 == -1 || c2 == -1) {
+                    int    c   = c1 == -1 ? c2 : c1;
+                    String lit = c1 == -1 ? t1 : t2;
+                    if (lit.equals ("?")) {
+                        _param [steps] = pDom.size ();
+                        pDom.add (dom [c]);
+                    } else {
+                        _const [steps] = convert (dom [c], lit);
+                    } // if
+                } // if
+            } // if
+            steps++;
+        } // for
+
+        return new Condition (Arrays.copyOf (_op, steps), Arrays.copyOf (_lCol, steps), Arrays.copyOf (_rCol, steps),
+                              Arrays.copyOf (_const, steps), Arrays.copyOf (_param, steps),
+                              pDom.toArray (new Class [0]));
+    } // compile
+
+    /***************************************************************************
+     * Return the number of parameters ("?") in the condition.
+     * @return  the parameter count
+     */
+    int params ()
+    {
+        return paramDomain.length;
+    } // params
+
+    /***************************************************************************
+     * Convert a parameter value to the domain of the column it is compared with.
+     * A String is converted as a literal would be; other values must already be
+     * of the right type.
+     * @param i      the parameter index (from 0)
+     * @param value  the value
+     * @return  the converted value
+     */
+    Comparable bind (int i, Comparable value)
+    {
+        if (value == null) throw new IllegalArgumentException ("Condition: parameter " + (i + 1) + " is null");
+        Class d = paramDomain [i];
+        if (d == Character.class)                          return value.toString ();
+        if (value instanceof String && d != String.class)  return convert (d, (String) value);
+        if (! d.isInstance (value)) {
+            throw new IllegalArgumentException ("Condition: parameter " + (i + 1) + " must be a " + d.getSimpleName ());
+        } // if
+        return value;
+    } // bind
+
+    /***************************************************************************
+     * Check whether the tuple satisfies the condition.  A conjunction checks its
+     * comparisons in turn, stopping at the first that fails; otherwise the
+     * postfix steps run on a stack kept in the bits of a long, so evaluation
+     * allocates nothing.
+     * @param tup     the tuple to check
+     * @param params  the (bound) parameter values
+     * @return  whether the condition holds
+     */
+    boolean eval (Comparable [] tup, Comparable [] params)
+    {
+        if (conjunction) {
+            for (int s = 0; s < op.length; s++) if (op [s] != AND && ! compare (s, tup, params)) return false;
+            return true;
+        } // if
+        long stack = 0;                                       // bit i holds entry i
+        int  top   = 0;
+        for (int s = 0; s < op.length; s++) {
+            switch (op [s]) {
+            case AND: top--; if ((stack >>> top & 1) == 0) stack &= ~(1L << top - 1); break;
+            case OR:  top--; if ((stack >>> top & 1) != 0) stack |= 1L << top - 1;    break;
+            default:  stack = push (stack, top++, compare (s, tup, params));
+            } // switch
+        } // for
+        return (stack >>> top - 1 & 1) != 0;
+    } // eval
+
+    /***************************************************************************
+     * Check the comparison at step s against the tuple.
+     * @param s       the step (a comparison)
+     * @param tup     the tuple to check
+     * @param params  the (bound) parameter values
+     * @return  whether the comparison holds
+     */
+    @SuppressWarnings("unchecked")
+    private boolean compare (int s, Comparable [] tup, Comparable [] params)
+    {
+        Comparable x = operand (lCol [s], s, tup, params), y = operand (rCol [s], s, tup, params);
+        if (x instanceof Character || y instanceof Character) { x = x.toString (); y = y.toString (); }
+        int c = x.compareTo (y);
+        switch (op [s]) {
+        case EQ: return c == 0;
+        case NE: return c != 0;
+        case LT: return c <  0;
+        case LE: return c <= 0;
+        case GT: return c >  0;
+        default: return c >= 0;
+        } // switch
+    } // compare
+
+    /***************************************************************************
+     * Set entry i of a bit stack.
+     * @param stack  the stack
+     * @param i      the entry
+     * @param r      its value
+     * @return  the new stack
+     */
+    private static long push (long stack, int i, boolean r)
+    {
+        return r ? stack | 1L << i : stack & ~(1L << i);
+    } // push
+
+    /***************************************************************************
+     * Determine whether some tuple whose column values lie within the given
+     * ranges may satisfy the condition.  Only comparisons of a column with a
+     * constant or parameter use the ranges; any other comparison, or a column
+     * without a range, may hold.
+     * @param lo      the minimum of each column (null if unknown)
+     * @param hi      the maximum of each column (null if unknown)
+     * @param params  the (bound) parameter values
+     * @return  false if no such tuple can satisfy the condition
+     */
+    boolean mayMatch (Comparable [] lo, Comparable [] hi, Comparable [] params)
+    {
+        if (conjunction) {
+            for (int s = 0; s < op.length; s++) if (op [s] != AND && ! mayHold (s, lo, hi, params)) return false;
+            return true;
+        } // if
+        long stack = 0;                                       // as in eval
+        int  top   = 0;
+        for (int s = 0; s < op.length; s++) {
+            switch (op [s]) {
+            case AND: top--; if ((stack >>> top & 1) == 0) stack &= ~(1L << top - 1); break;
+            case OR:  top--; if ((stack >>> top & 1) != 0) stack |= 1L << top - 1;    break;
+            default:  stack = push (stack, top++, mayHold (s, lo, hi, params));
+            } // switch
+        } // for
+        return (stack >>> top - 1 & 1) != 0;
+    } // mayMatch
+
+    /***************************************************************************
+     * Determine whether the comparison at step s may hold for some tuple whose
+     * column values lie within the given ranges.
+     * @param s       the step (a comparison)
+     * @param lo      the minimum of each column (null if unknown)
+     * @param hi      the maximum of each column (null if unknown)
+     * @param params  the (bound) parameter values
+     * @return  false if the comparison cannot hold
+     */
+    @SuppressWarnings("unchecked")
+    private boolean mayHold (int s, Comparable [] lo, Comparable [] hi, Comparable [] params)
+    {
+        if ((lCol [s] == -1) == (rCol [s] == -1)) return true;
+        int        c = lCol [s] == -1 ? rCol [s] : lCol [s];
+        Comparable v = operand (-1, s, null, params);
+        int        o = lCol [s] == -1 ? flip (op [s]) : op [s];          // as "column o v"
+        if (lo [c] == null || lo [c].getClass () != v.getClass ()) return true;
+        int cLo = lo [c].compareTo (v), cHi = hi [c].compareTo (v);
+        switch (o) {
+        case EQ: return cLo <= 0 && cHi >= 0;
+        case NE: return ! (cLo == 0 && cHi == 0);
+        case LT: return cLo <  0;
+        case LE: return cLo <= 0;
+        case GT: return cHi >  0;
+        default: return cHi >= 0;
+        } // switch
+    } // mayHold
+
+    /***************************************************************************
+     * Compute the slots of the records that may satisfy the condition using
+     * bitmap indexes: an equality (or inequality) of an indexed column with a
+     * constant or parameter gives the bitmap of the value (or its complement),
+     * any other comparison gives all the slots, and "&" / "|" AND / OR them.
+     * @param indexes   the bitmap indexes, by column position
+     * @param universe  the slots of all the records
+     * @param params    the (bound) parameter values
+     * @return  a superset of the matching slots (exact if exact (indexes)), or
+     *          null if no comparison could use an index
+     */
+    RoaringBitmap candidates (Map <Integer, BitmapIndex> indexes, RoaringBitmap universe, Comparable [] params)
+    {
+        if (op.length == 0) return null;
+        RoaringBitmap [] stack = new RoaringBitmap [op.length];
+        int              top   = 0;
+        boolean          used  = false;
+        for (int s = 0; s < op.length; s++) {
+            switch (op [s]) {
+            case AND: top--; stack [top - 1] = RoaringBitmap.and (stack [top - 1], stack [top]); break;
+            case OR:  top--; stack [top - 1] = RoaringBitmap.or (stack [top - 1], stack [top]);  break;
+            default:
+                BitmapIndex bi = indexed (s, indexes);
+                if (bi == null) {
+                    stack [top++] = universe;
+                } else {
+                    RoaringBitmap eq = bi.get (operand (-1, s, null, params));
+                    stack [top++] = op [s] == EQ ? eq : RoaringBitmap.andNot (bi.all (), eq);
+                    used = true;
+                } // if
+            } // switch
+        } // for
+        return used ? stack [top - 1] : null;
+    } // candidates
+
+    /***************************************************************************
+     * Determine whether candidates gives exactly the matching slots, i.e.,
+     * every comparison can use one of the bitmap indexes.
+     * @param indexes  the bitmap indexes, by column position
+     * @return  whether the candidates need not be checked
+     */
+    boolean exact (Map <Integer, BitmapIndex> indexes)
+    {
+        for (int s = 0; s < op.length; s++) if (op [s] < AND && indexed (s, indexes) == null) return false;
+        return true;
+    } // exact
+
+    /***************************************************************************
+     * Determine whether filter can check the condition on column batches: it
+     * is a conjunction ("&" only) of comparisons, each of a column with a
+     * constant or parameter, or of two columns that are both numeric with the
+     * same domain or both strings.
+     * @param dom  the attribute domains of the tuples to check
+     * @return  whether the condition is vectorizable
+     */
+    boolean vectorizable (Class [] dom)
+    {
+        if (op.length == 0) return false;
+        for (int s = 0; s < op.length; s++) {
+            if (op [s] == OR) return false;
+            if (op [s] == AND || lCol [s] == -1 || rCol [s] == -1) continue;
+            Class d1 = dom [lCol [s]], d2 = dom [rCol [s]];
+            if (ColumnBatch.numeric (d1) ? d1 != d2 : ColumnBatch.numeric (d2)) return false;
+        } // for
+        return true;
+    } // vectorizable
+
+    /***************************************************************************
+     * Narrow the selected rows of the batch to those satisfying the condition,
+     * one comparison (a primitive loop over a column) at a time.  The condition
+     * must be vectorizable.
+     * @param batch   the column batch
+     * @param dom     the attribute domains of the batch
+     * @param params  the (bound) parameter values
+     */
+    void filter (ColumnBatch batch, Class [] dom, Comparable [] params)
+    {
+        for (int s = 0; s < op.length && batch.size () > 0; s++) {
+            if (op [s] == AND) continue;
+            if (lCol [s] != -1 && rCol [s] != -1) {
+                if (ColumnBatch.numeric (dom [lCol [s]])) batch.filterColumns (lCol [s], op [s], rCol [s]);
+                else                                      batch.filterStrings (lCol [s], op [s], rCol [s]);
+                continue;
+            } // if
+            int        c = lCol [s] == -1 ? rCol [s] : lCol [s];
+            int        o = lCol [s] == -1 ? flip (op [s]) : op [s];           // as "column o v"
+            Comparable v = operand (-1, s, null, params);
+            if (ColumnBatch.numeric (dom [c])) batch.filter (c, o, ColumnBatch.sortable (v));
+            else                               batch.filter (c, o, v.toString ());
+        } // for
+    } // filter
+
+    /***************************************************************************
+     * Return the bitmap index usable for comparison step s (an equality or
+     * inequality of an indexed column with a constant or parameter), or null.
+     */
+    private BitmapIndex indexed (int s, Map <Integer, BitmapIndex> indexes)
+    {
+        if ((op [s] != EQ && op [s] != NE) || (lCol [s] == -1) == (rCol [s] == -1)) return null;
+        return indexes.get (lCol [s] == -1 ? rCol [s] : lCol [s]);
+    } // indexed
+
+    private static int flip (int code)
+    {
+        switch (code) {
+        case LT: return GT;
+        case LE: return GE;
+        case GT: return LT;
+        case GE: return LE;
+        default: return code;
+        } // switch
+    } // flip
+
+    private Comparable operand (int col, int s, Comparable [] tup, Comparable [] params)
+    {
+        if (col != -1)       return tup [col];
+        if (param [s] != -1) return params [param [s]];
+        return constant [s];
+    } // operand
+
+    /***************************************************************************
+     * Convert a literal to a value of the given domain (Character literals are
+     * kept as strings, since Character columns are compared as strings).
+     */
+    private static Comparable convert (Class dom, String literal)
+    {
+        if (dom == Character.class || dom == String.class) return literal;
+        @SuppressWarnings("unchecked")
+        Comparable v = String2Type.cons (dom, literal);
+        if (v == null) throw new IllegalArgumentException ("Condition: bad " + dom.getSimpleName () + " literal " + literal);
+        return v;
+    } // convert
+
+    private static int opCode (String token)
+    {
+        switch (token) {
+        case "==": return EQ;
+        case "!=": return NE;
+        case "<":  return LT;
+        case "<=": return LE;
+        case ">":  return GT;
+        case ">=": return GE;
+        case "&":  return AND;
+        case "|":  return OR;
+        default:   return -1;
+        } // switch
+    } // opCode
+
+} // Condition class
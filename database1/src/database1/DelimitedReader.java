@@ -0,0 +1,225 @@
+
+/*******************************************************************************
+ * @file  DelimitedReader.java
+ */
+
+package database1;
+
+import java.io.*;
+import java.util.*;
+
+/*******************************************************************************
+ * This class reads tuples from delimited text (CSV or TSV), one per line, with
+ * fields converted to the table's domains.  It scans characters from a buffer
+ * with no per-line splitting or per-field reflection: the converter for each
+ * column is chosen once from its domain.  A field may be quoted with '"' (a
+ * doubled quote inside standing for one), so it can hold the delimiter.  Blank
+ * lines are skipped.
+ */
+class DelimitedReader
+      implements Iterator <Comparable []>, Closeable
+{
+    private static final int INTEGER = 0, LONG = 1, SHORT = 2, BYTE = 3, DOUBLE = 4, FLOAT = 5,
+                             CHARACTER = 6, STRING = 7;
+
+    /** The source of the text.
+     */
+    private final Reader in;
+
+    /** The field delimiter.
+     */
+    private final char delimiter;
+
+    /** The converter code for each column.
+     */
+    private final int [] type;
+
+    /** The character buffer and the read position and limit in it.
+     */
+    private final char [] buf = new char [1 << 16];
+    private int           pos, limit;
+
+    /** The field being read.
+     */
+    private final StringBuilder field = new StringBuilder ();
+
+    /** The current line number (for error messages).
+     */
+    private int line;
+
+    /** The next tuple (null at end of input).
+     */
+    private Comparable [] next;
+
+    /***************************************************************************
+     * Construct a reader of tuples with the given domains.
+     * @param _in         the source of the text
+     * @param _delimiter  the field delimiter (e.g., ',' or '\t')
+     * @param domain      the domains of the columns
+     * @param header      whether the first line is a header (skipped)
+     */
+    DelimitedReader (Reader _in, char _delimiter, Class [] domain, boolean header)
+    {
+        in        = _in;
+        delimiter = _delimiter;
+        type      = new int [domain.length];
+        for (int j = 0; j < domain.length; j++) {
+            switch (domain [j].getSimpleName ()) {
+            case "Integer":   type [j] = INTEGER;   break;
+            case "Long":      type [j] = LONG;      break;
+            case "Short":     type [j] = SHORT;     break;
+            case "Byte":      type [j] = BYTE;      break;
+            case "Double":    type [j] = DOUBLE;    break;
+            case "Float":     type [j] = FLOAT;     break;
+            case "Character": type [j] = CHARACTER; break;
+            case "String":    type [j] = STRING;    break;
+            default: throw new IllegalArgumentException ("DelimitedReader: unsupported domain " + domain [j].getName ());
+            } // switch
+        } // for
+        if (header) skipLine ();
+        next = readLine ();
+    } // constructor
+
+    public boolean hasNext ()
+    {
+        return next != null;
+    } // hasNext
+
+    public Comparable [] next ()
+    {
+        if (next == null) throw new NoSuchElementException ();
+        Comparable [] tup = next;
+        next = readLine ();
+        return tup;
+    } // next
+
+    public void close () throws IOException
+    {
+        in.close ();
+    } // close
+
+    /***************************************************************************
+     * Skip a line (e.g., the header) without converting its fields.
+     */
+    private void skipLine ()
+    {
+        if (peek () == -1) return;
+        line++;
+        while (! readField ()) ;
+    } // skipLine
+
+    /***************************************************************************
+     * Read the next non-blank line as a tuple.
+     * @return  the tuple, or null at end of input
+     */
+    private Comparable [] readLine ()
+    {
+        for ( ; ; ) {
+            int c = peek ();
+            if (c == -1) return null;
+            line++;
+            if (c == '\n' || c == '\r') { skipEol (); continue; }     // blank line
+
+            Comparable [] tup = new Comparable [type.length];
+            for (int j = 0; ; j++) {
+                boolean last = readField ();
+                if (j < tup.length) tup [j] = convert (j);
+                if (last) {
+                    if (j != tup.length - 1) {
+                        throw new IllegalArgumentException ("DelimitedReader: line " + line + " has " + (j + 1) +
+                                                            " fields, not " + tup.length);
+                    } // if
+                    return tup;
+                } // if
+            } // for
+        } // for
+    } // readLine
+
+    /***************************************************************************
+     * Read one field into the field buffer.
+     * @return  whether it was the last field of the line
+     */
+    private boolean readField ()
+    {
+        field.setLength (0);
+        int c = peek ();
+        if (c == '"') {                                       // quoted field
+            pos++;
+            for ( ; ; ) {
+                c = read ();
+                if (c == -1) throw new IllegalArgumentException ("DelimitedReader: line " + line + " has an unclosed quote");
+                if (c == '"') {
+                    if (peek () != '"') break;
+                    pos++;
+                } // if
+                field.append ((char) c);
+            } // for
+            c = peek ();
+        } else {
+            while ((c = peek ()) != -1 && c != delimiter && c != '\n' && c != '\r') {
+                field.append ((char) c);
+                pos++;
+            } // while
+        } // if
+
+        if (c == delimiter) { pos++; return false; }
+        if (c != -1 && c != '\n' && c != '\r') {
+            throw new IllegalArgumentException ("DelimitedReader: line " + line + " has text after a quoted field");
+        } // if
+        skipEol ();
+        return true;
+    } // readField
+
+    /***************************************************************************
+     * Convert the field just read to the domain of column j.
+     */
+    private Comparable convert (int j)
+    {
+        String s = field.toString ();
+        try {
+            switch (type [j]) {
+            case INTEGER:   return Integer.parseInt (s.trim ());
+            case LONG:      return Long.parseLong (s.trim ());
+            case SHORT:     return Short.parseShort (s.trim ());
+            case BYTE:      return Byte.parseByte (s.trim ());
+            case DOUBLE:    return Double.parseDouble (s);
+            case FLOAT:     return Float.parseFloat (s);
+            case CHARACTER:
+                if (s.length () != 1) throw new NumberFormatException ("not one character");
+                return s.charAt (0);
+            default:        return s;
+            } // switch
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException ("DelimitedReader: line " + line + ", field " + (j + 1) +
+                                                ": bad value \"" + s + "\"", ex);
+        } // try
+    } // convert
+
+    private void skipEol ()
+    {
+        if (peek () == '\r') pos++;
+        if (peek () == '\n') pos++;
+    } // skipEol
+
+    private int read ()
+    {
+        int c = peek ();
+        if (c != -1) pos++;
+        return c;
+    } // read
+
+    private int peek ()
+    {
+        if (pos == limit) {
+            try {
+                limit = in.read (buf, 0, buf.length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("DelimitedReader: unable to read", ex);
+            } // try
+            pos = 0;
+            if (limit <= 0) { limit = 0; return -1; }
+        } // if
+        return buf [pos];
+    } // peek
+
+} // DelimitedReader class
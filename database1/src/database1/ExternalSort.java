@@ -0,0 +1,262 @@
+
+/*******************************************************************************
+ * @file  ExternalSort.java
+ */
+
+package database1;
+
+import java.io.*;
+import java.util.*;
+
+/*******************************************************************************
+ * This class implements an external merge sort of a table's tuples.  Tuples are
+ * collected into memory-sized runs, each run is sorted and written to a temporary
+ * file as packed records (see Table.pack), and the runs are then combined with a
+ * k-way merge driven by a heap holding one tuple per run.  When there are more
+ * runs than FAN_IN, intermediate merge passes reduce them first.  Run files are
+ * read and written through large buffers, so all I/O is sequential.
+ */
+class ExternalSort
+{
+    /** Size of the I/O buffer for each run file.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Maximum number of runs merged at once (bounds the heap and buffer memory).
+     */
+    private static final int FAN_IN = 64;
+
+    /** Memory budget (in bytes of packed tuples) for a run.
+     *  May be set with -Ddatabase1.sortBudget=<bytes>.
+     */
+    private static long budget = Long.getLong ("database1.sortBudget", 16L << 20);
+
+    /** The table whose tuples are sorted (supplies pack/unpack).
+     */
+    private final Table table;
+
+    /** The number bytes required to store a "packed tuple"/record.
+     */
+    private final int recordSize;
+
+    /** The sort order.
+     */
+    private final Comparator <Comparable []> order;
+
+    /***************************************************************************
+     * Interface for the destination of merged tuples.
+     */
+    interface Sink
+    {
+        void put (Comparable [] tup) throws IOException;
+    } // Sink interface
+
+    /***************************************************************************
+     * A sorted run stored in a temporary file.
+     */
+    private static class Run
+    {
+        final File file;
+        final long size;
+
+        Run (File _file, long _size) { file = _file; size = _size; }
+    } // Run class
+
+    /***************************************************************************
+     * A reader positioned on the current (head) tuple of a run.
+     */
+    private class RunReader
+    {
+        final int             seq;
+        final DataInputStream in;
+        final byte []         record = new byte [recordSize];
+        long                  remaining;
+        Comparable []         head;
+
+        RunReader (Run run, int _seq) throws IOException
+        {
+            seq       = _seq;
+            in        = new DataInputStream (new BufferedInputStream (new FileInputStream (run.file), BUFFER_SIZE));
+            remaining = run.size;
+        } // constructor
+
+        boolean advance () throws IOException
+        {
+            if (remaining-- == 0) return false;
+            in.readFully (record);
+            head = table.unpack (record);
+            return true;
+        } // advance
+
+    } // RunReader class
+
+    /***************************************************************************
+     * Construct an external sort on the given columns.
+     * @param _table      the table whose tuples are sorted
+     * @param cols        the column positions to sort on (major to minor)
+     * @param descending  for each column, whether it is sorted in descending order
+     */
+    ExternalSort (Table _table, final int [] cols, final boolean [] descending)
+    {
+        table      = _table;
+        recordSize = table.tupleSize ();
+        order      = new Comparator <Comparable []> () {
+            @SuppressWarnings("unchecked")
+            public int compare (Comparable [] t1, Comparable [] t2)
+            {
+                for (int j = 0; j < cols.length; j++) {
+                    int c = t1 [cols [j]].compareTo (t2 [cols [j]]);
+                    if (c != 0) return descending [j] ? -c : c;
+                } // for
+                return 0;
+            } // compare
+        };
+    } // constructor
+
+    /***************************************************************************
+     * Sort the input tuples, appending them in order to the result table.
+     * @param input   the tuples to sort
+     * @param result  the table receiving the sorted tuples
+     */
+    void sort (Iterator <Comparable []> input, final Table result)
+    {
+        sort (input, new Sink () {
+            public void put (Comparable [] tup) { result.append (tup); }
+        });
+    } // sort
+
+    /***************************************************************************
+     * Sort the input tuples, passing them in order to the sink.
+     * @param input  the tuples to sort
+     * @param sink   the destination of the sorted tuples
+     */
+    void sort (Iterator <Comparable []> input, Sink sink)
+    {
+        int maxRun = (int) Math.max (1, Math.min (Integer.MAX_VALUE - 8, budget / recordSize));
+        List <Comparable []> buffer = new ArrayList <> ();
+        List <Run>           runs   = new ArrayList <> ();
+
+        try {
+            while (input.hasNext ()) {
+                buffer.add (input.next ());
+                if (buffer.size () == maxRun && input.hasNext ()) {
+                    runs.add (writeRun (buffer));
+                    buffer.clear ();
+                } // if
+            } // while
+
+            if (runs.isEmpty ()) {                           // fits in memory: no I/O
+                Collections.sort (buffer, order);
+                for (Comparable [] tup : buffer) sink.put (tup);
+                return;
+            } // if
+            if (! buffer.isEmpty ()) runs.add (writeRun (buffer));
+            buffer = null;
+
+            while (runs.size () > FAN_IN) {                  // intermediate merge passes
+                List <Run> merged = new ArrayList <> ();
+                try {
+                    for (int i = 0; i < runs.size (); i += FAN_IN) {
+                        merged.add (mergeToRun (runs.subList (i, Math.min (i + FAN_IN, runs.size ()))));
+                    } // for
+                } catch (IOException | RuntimeException ex) {
+                    for (Run run : merged) run.file.delete ();    // the finally below deletes the rest
+                    throw ex;
+                } // try
+                runs = merged;
+            } // while
+
+            merge (runs, sink);
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("ExternalSort.sort: run I/O failed", ex);
+        } finally {
+            for (Run run : runs) run.file.delete ();
+        } // try
+    } // sort
+
+    /***************************************************************************
+     * Sort the buffered tuples and write them to a new run file.
+     * @param buffer  the tuples of the run
+     * @return  the run
+     */
+    private Run writeRun (List <Comparable []> buffer) throws IOException
+    {
+        Collections.sort (buffer, order);
+        File file = newRunFile ();
+        try (OutputStream os = new BufferedOutputStream (new FileOutputStream (file), BUFFER_SIZE)) {
+            for (Comparable [] tup : buffer) os.write (table.pack (tup));
+        } catch (IOException | RuntimeException ex) {
+            file.delete ();
+            throw ex;
+        } // try
+        return new Run (file, buffer.size ());
+    } // writeRun
+
+    /***************************************************************************
+     * Merge a group of runs into a single new run (and delete the group).
+     * @param group  the runs to merge
+     * @return  the merged run
+     */
+    private Run mergeToRun (List <Run> group) throws IOException
+    {
+        File file = newRunFile ();
+        long size = 0;
+        for (Run run : group) size += run.size;
+        try (final OutputStream os = new BufferedOutputStream (new FileOutputStream (file), BUFFER_SIZE)) {
+            merge (group, new Sink () {
+                public void put (Comparable [] tup) throws IOException { os.write (table.pack (tup)); }
+            });
+        } catch (IOException | RuntimeException ex) {
+            file.delete ();
+            throw ex;
+        } // try
+        for (Run run : group) run.file.delete ();
+        return new Run (file, size);
+    } // mergeToRun
+
+    /***************************************************************************
+     * Perform a k-way merge of the runs, passing the tuples in order to the sink.
+     * The heap holds at most one reader per run; ties go to the earlier run, so
+     * the sort is stable.
+     * @param group  the runs to merge
+     * @param sink   the destination of the merged tuples
+     */
+    private void merge (List <Run> group, Sink sink) throws IOException
+    {
+        PriorityQueue <RunReader> heap = new PriorityQueue <> (group.size (), new Comparator <RunReader> () {
+            public int compare (RunReader r1, RunReader r2)
+            {
+                int c = order.compare (r1.head, r2.head);
+                return c != 0 ? c : r1.seq - r2.seq;
+            } // compare
+        });
+
+        List <RunReader> readers = new ArrayList <> (group.size ());
+        try {
+            for (Run run : group) {
+                RunReader r = new RunReader (run, readers.size ());
+                readers.add (r);
+                if (r.advance ()) heap.add (r);
+            } // for
+            while (! heap.isEmpty ()) {
+                RunReader r = heap.poll ();
+                sink.put (r.head);
+                if (r.advance ()) heap.add (r);
+            } // while
+        } finally {
+            for (RunReader r : readers) r.in.close ();
+        } // try
+    } // merge
+
+    /***************************************************************************
+     * Create a temporary file for a run.  Run files are deleted once merged
+     * (or when the sort fails).
+     * @return  the run file
+     */
+    private File newRunFile () throws IOException
+    {
+        return File.createTempFile (table.getName () + "_run", ".tmp");
+    } // newRunFile
+
+} // ExternalSort class
+
@@ -10,11 +10,21 @@ package database1;
 import java.io.*;
 import static java.lang.System.out;
 import java.util.*;
+import java.util.zip.*;
 
 /*******************************************************************************
  * This class allows data tuples/tuples (e.g., those making up a relational table)
  * to be stored in a random access file.  This implementation requires that each
  * tuple be packed into a fixed length byte array.
+ * Records are grouped into pages of PAGE_BYTES.  Optionally (see setCompression),
+ * each full page is compressed with Deflater before it is written; a page
+ * directory then records where each page lies in the file, so get (i) inflates
+ * only the page holding record i, and a small LRU cache keeps recently used
+ * pages decompressed.  Records of the last, partial page stay in memory until
+ * it fills (or the list is closed).
+ * Reads may run in several threads at once: the file pointer and the page
+ * cache are used only while holding the list's lock.  Adding is not
+ * synchronized, so writers must exclude readers (see WorkloadDriver).
  */
 public class FileList
        extends AbstractList <Comparable []>
@@ -24,6 +34,20 @@ public class FileList
      */
     private static final String EXT = ".dat";
 
+    /** Number of bytes of records per page (the unit of compression and of
+     *  zone map summaries).
+     */
+    private static final int PAGE_BYTES = 8192;
+
+    /** Whether new file lists compress their pages.
+     *  May be set with -Ddatabase1.compress=true.
+     */
+    private static boolean compressNew = Boolean.getBoolean ("database1.compress");
+
+    /** Number of decompressed pages cached per file list.
+     */
+    private static final int PAGE_CACHE = Integer.getInteger ("database1.pageCache", 64);
+
     /** The random access file that holds the tuples.
      */
     private RandomAccessFile file;
@@ -40,6 +64,37 @@ public class FileList
      */
     private int nRecords = 0;
 
+    /** Per-block min/max summaries of the records (see ZoneMap).
+     */
+    private ZoneMap zones;
+
+    /** Number of records per page.
+     */
+    private final int perPage;
+
+    /** Whether pages are compressed.
+     */
+    private final boolean compressed;
+
+    /** Page directory (compressed only): file offset and length of each page written.
+     */
+    private long [] pageOffset = new long [16];
+    private int []  pageLength = new int [16];
+    private int     nPages;
+
+    /** The last, partial page (compressed only), not yet written.
+     */
+    private byte [] tail;
+
+    /** Recently used decompressed pages (compressed only).
+     */
+    private final Map <Integer, byte []> pageCache = new LruCache <> (PAGE_CACHE);
+
+    /** The codec state (compressed only).
+     */
+    private Deflater deflater;
+    private Inflater inflater;
+
     /***************************************************************************
      * Construct a FileList.
      * @param _table       the name of list
@@ -49,6 +104,9 @@ public class FileList
     {
         table      = _table;
         recordSize = _recordSize;
+        perPage    = Math.max (1, PAGE_BYTES / recordSize);
+        compressed = compressNew;
+        if (compressed) initCodec ();
 
         try {
             file = new RandomAccessFile (table.getName () + EXT, "rw");
@@ -58,6 +116,44 @@ public class FileList
         } // try
     } // constructor
 
+    /***************************************************************************
+     * Construct a FileList stored in the given file (e.g., a temporary file).
+     * @param _table       the table it is used to store
+     * @param _recordSize  the size of tuple in bytes.
+     * @param _file        the file to store the tuples in
+     */
+    public FileList (Table _table, int _recordSize, File _file)
+    {
+        table      = _table;
+        recordSize = _recordSize;
+        perPage    = Math.max (1, PAGE_BYTES / recordSize);
+        compressed = compressNew;
+        if (compressed) initCodec ();
+
+        try {
+            file = new RandomAccessFile (_file, "rw");
+        } catch (FileNotFoundException ex) {
+            file = null;
+            out.println ("FileList.constructor: unable to open - " + ex);
+        } // try
+    } // constructor
+
+    /***************************************************************************
+     * Set whether file lists created from now on compress their pages.
+     * @param on  whether to compress
+     */
+    public static void setCompression (boolean on)
+    {
+        compressNew = on;
+    } // setCompression
+
+    private void initCodec ()
+    {
+        tail     = new byte [perPage * recordSize];
+        deflater = new Deflater (Deflater.BEST_SPEED);
+        inflater = new Inflater ();
+    } // initCodec
+
     /***************************************************************************
      * Add a new tuple into the file list by packing it into a record and writing
      * this record to the random access file.  Write the record either at the
@@ -80,7 +176,17 @@ public class FileList
         //project#2 begin
         try
         {
-        	file.write(record);
+        	if (compressed) {
+        	    int slot = nRecords % perPage;
+        	    System.arraycopy (record, 0, tail, slot * recordSize, recordSize);
+        	    if (slot == perPage - 1) writePage (perPage);
+        	} else {
+        	    file.seek((long) nRecords * recordSize);   // get may have moved the file pointer
+        	    file.write(record);
+        	    table.getMetrics ().written (1, recordSize);
+        	} // if
+        	if (zones == null) zones = new ZoneMap (perPage);
+        	zones.add (nRecords, tuple);
         	nRecords++;
         }
         catch(IOException x)
@@ -92,6 +198,45 @@ public class FileList
         return true;
     } // add
 
+    /***************************************************************************
+     * Add the tuples in order, packing up to a page of records into one buffer
+     * and writing it with a single sequential write (used for bulk loading).
+     * @param tuples  the tuples to add
+     * @return  whether any tuple was added
+     */
+    @Override
+    public boolean addAll (Collection <? extends Comparable []> tuples)
+    {
+        if (compressed) return super.addAll (tuples);              // add already writes whole pages
+
+        byte [] buf = new byte [perPage * recordSize];
+        int     n   = 0;
+        try {
+            file.seek ((long) nRecords * recordSize);
+            for (Comparable [] tuple : tuples) {
+                byte [] record = table.pack (tuple);
+                if (record.length != recordSize) {
+                    throw new IllegalArgumentException ("FileList.addAll: wrong record size " + record.length);
+                } // if
+                System.arraycopy (record, 0, buf, n * recordSize, recordSize);
+                if (zones == null) zones = new ZoneMap (perPage);
+                zones.add (nRecords + n, tuple);
+                if (++n == perPage) {
+                    file.write (buf, 0, n * recordSize);
+                    table.getMetrics ().written (n, (long) n * recordSize);
+                    nRecords += n;
+                    n = 0;
+                } // if
+            } // for
+            file.write (buf, 0, n * recordSize);
+            table.getMetrics ().written (n, (long) n * recordSize);
+            nRecords += n;
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("FileList.addAll: unable to write", ex);
+        } // try
+        return ! tuples.isEmpty ();
+    } // addAll
+
     /***************************************************************************
      * Get the ith tuple by seeking to the correct file position and reading the
      * record.
@@ -105,9 +250,17 @@ public class FileList
        // TO BE IMPLEMENTED \\
       //---------------------\\
    //project#2 add 
+		if (compressed) {
+			System.arraycopy (page (i / perPage), (i % perPage) * recordSize, record, 0, recordSize);
+			table.getMetrics ().read (1, 0);
+			return table.unpack (record);
+		} // if
 		try {
-			file.seek(i * recordSize);
-			file.read(record);
+			synchronized (this) {
+				file.seek((long) i * recordSize);
+				file.read(record);
+			} // synchronized
+			table.getMetrics ().read (1, recordSize);
 		} catch (IOException x) {
 			System.out.println("I/O Exception: " + x);
 		}
@@ -116,6 +269,148 @@ public class FileList
 		return table.unpack(record);
     } // get
 
+    /***************************************************************************
+     * Read the records of block b (as summarized by the zone map) with a single
+     * read and unpack them.
+     * @param b  the block number
+     * @return  the tuples of the block, in slot order
+     */
+    List <Comparable []> getBlock (int b)
+    {
+        int     from  = b * perPage, n = Math.min (nRecords, from + perPage) - from;
+        byte [] block;
+        if (compressed) {
+            block = page (b);
+            table.getMetrics ().read (n, 0);
+        } else {
+            block = new byte [n * recordSize];
+            try {
+                synchronized (this) {
+                    file.seek ((long) from * recordSize);
+                    file.readFully (block);
+                } // synchronized
+                table.getMetrics ().read (n, block.length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("FileList.getBlock: unable to read block " + b, ex);
+            } // try
+        } // if
+
+        List <Comparable []> list = new ArrayList <> (n);
+        for (int i = 0; i < n; i++) list.add (table.unpack (Arrays.copyOfRange (block, i * recordSize, (i + 1) * recordSize)));
+        return list;
+    } // getBlock
+
+    /***************************************************************************
+     * Read up to n packed records from slot "from" on into buf (with a single
+     * read unless the pages are compressed), for batch decoding (see
+     * ColumnBatch).
+     * @param from  the slot of the first record
+     * @param n     the maximum number of records to read
+     * @param buf   the buffer to read them into
+     * @return  the number of records read
+     */
+    int records (int from, int n, byte [] buf)
+    {
+        n = Math.max (0, Math.min (n, nRecords - from));
+        if (compressed) {
+            for (int i = 0; i < n; ) {
+                int slot = (from + i) % perPage, m = Math.min (n - i, perPage - slot);
+                System.arraycopy (page ((from + i) / perPage), slot * recordSize, buf, i * recordSize, m * recordSize);
+                i += m;
+            } // for
+            table.getMetrics ().read (n, 0);
+        } else {
+            try {
+                synchronized (this) {
+                    file.seek ((long) from * recordSize);
+                    file.readFully (buf, 0, n * recordSize);
+                } // synchronized
+                table.getMetrics ().read (n, (long) n * recordSize);
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("FileList.records: unable to read from " + from, ex);
+            } // try
+        } // if
+        return n;
+    } // records
+
+    /***************************************************************************
+     * Return the decompressed page p (the tail page, a cached page or one read
+     * from the file and inflated).
+     * @param p  the page number
+     * @return  the records of the page, packed
+     */
+    private synchronized byte [] page (int p)
+    {
+        if (p == nPages) return tail;
+        byte [] page = pageCache.get (p);
+        if (page != null) return page;
+
+        byte [] packed = new byte [pageLength [p]];
+        page = new byte [perPage * recordSize];
+        try {
+            file.seek (pageOffset [p]);
+            file.readFully (packed);
+            table.getMetrics ().read (0, packed.length);
+            inflater.reset ();
+            inflater.setInput (packed);
+            int n = 0;
+            while (n < page.length && ! inflater.finished ()) n += inflater.inflate (page, n, page.length - n);
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("FileList.page: unable to read page " + p, ex);
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException ("FileList.page: corrupt page " + p, ex);
+        } // try
+        pageCache.put (p, page);
+        return page;
+    } // page
+
+    /***************************************************************************
+     * Compress the first n records of the tail page, append them to the file
+     * and record the page in the directory.
+     * @param n  the number of records in the tail page
+     */
+    private void writePage (int n) throws IOException
+    {
+        deflater.reset ();
+        deflater.setInput (tail, 0, n * recordSize);
+        deflater.finish ();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream (n * recordSize / 4 + 64);
+        byte []               buf   = new byte [4096];
+        while (! deflater.finished ()) bytes.write (buf, 0, deflater.deflate (buf));
+
+        if (nPages == pageOffset.length) {
+            pageOffset = Arrays.copyOf (pageOffset, 2 * nPages);
+            pageLength = Arrays.copyOf (pageLength, 2 * nPages);
+        } // if
+        long offset = nPages == 0 ? 0 : pageOffset [nPages - 1] + pageLength [nPages - 1];
+        file.seek (offset);
+        file.write (bytes.toByteArray ());
+        table.getMetrics ().written (n, bytes.size ());
+        pageOffset [nPages] = offset;
+        pageLength [nPages] = bytes.size ();
+        nPages++;
+    } // writePage
+
+    /***************************************************************************
+     * Return the number of bytes the records take in the file (for a compressed
+     * list, the pages written so far).
+     * @return  the stored size in bytes
+     */
+    long storedBytes ()
+    {
+        return compressed ? (nPages == 0 ? 0 : pageOffset [nPages - 1] + pageLength [nPages - 1])
+                          : (long) nRecords * recordSize;
+    } // storedBytes
+
+    /***************************************************************************
+     * Return the zone map summarizing the records (null if there are none).
+     * @return  the zone map
+     */
+    ZoneMap zones ()
+    {
+        return zones;
+    } // zones
+
     /***************************************************************************
      * Return the size of the file list in terms of the number of tuples/records.
      * @return  the number of tuples
@@ -131,6 +426,9 @@ public class FileList
     public void close ()
     {
         try {
+            if (compressed && nRecords % perPage != 0 && nPages == nRecords / perPage) {
+                writePage (nRecords % perPage);               // flush the partial page
+            } // if
             file.close ();
         } catch (IOException ex) {
             out.println ("FileList.close: unable to close - " + ex);
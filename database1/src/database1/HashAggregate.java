@@ -0,0 +1,374 @@
+
+/*******************************************************************************
+ * @file  HashAggregate.java
+ */
+
+package database1;
+
+import java.io.*;
+import java.util.*;
+
+/*******************************************************************************
+ * This class implements hash aggregation (grouping with COUNT, SUM, AVG, MIN and
+ * MAX).  Groups live in an open-addressing hash table keyed by the KeyType of the
+ * grouping columns, with the running counts and sums held in primitive arrays.
+ * When the number of groups reaches the limit, tuples of groups not already in
+ * the table are written (packed, see Table.pack) to one of FANOUT partition files
+ * chosen by hash; after the input is consumed, the in-memory groups are emitted
+ * and each partition is aggregated in turn the same way.
+ */
+class HashAggregate
+{
+    /** Aggregate functions.
+     */
+    private static final int COUNT = 0, SUM = 1, AVG = 2, MIN = 3, MAX = 4;
+    private static final String [] FUNCTION = { "count", "sum", "avg", "min", "max" };
+
+    /** Number of spill partitions per level and the number of hash bits it takes.
+     */
+    private static final int FANOUT = 16;
+    private static final int BITS   = 4;
+
+    /** Beyond this depth, partitions are aggregated without a group limit.
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /** Size of the I/O buffer for each partition file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Maximum number of groups held in memory.
+     *  May be set with -Ddatabase1.maxGroups=<n>.
+     */
+    private static int maxGroups = Integer.getInteger ("database1.maxGroups", 1 << 20);
+
+    /** The table being aggregated (supplies pack/unpack for spilled tuples).
+     */
+    private final Table table;
+
+    /** Column positions of the grouping attributes.
+     */
+    private final int [] groupCols;
+
+    /** For each aggregate: the function, the column position (-1 for count (*))
+     *  and whether the column is real (Float/Double) rather than integral.
+     */
+    private final int []     fn;
+    private final int []     aggCols;
+    private final boolean [] real;
+
+    /** Attribute names and domains of the result.
+     */
+    final String [] attribute;
+    final Class []  domain;
+
+    /***************************************************************************
+     * Construct a hash aggregation.
+     * @param _table      the table being aggregated
+     * @param tAttribute  the attribute names of the table
+     * @param tDomain     the attribute domains of the table
+     * @param groupAttr   the grouping attributes
+     * @param aggregates  the aggregates (e.g., "count(*)", "sum(length)")
+     */
+    HashAggregate (Table _table, String [] tAttribute, Class [] tDomain, String [] groupAttr, String [] aggregates)
+    {
+        table     = _table;
+        groupCols = new int [groupAttr.length];
+        fn        = new int [aggregates.length];
+        aggCols   = new int [aggregates.length];
+        real      = new boolean [aggregates.length];
+        attribute = new String [groupAttr.length + aggregates.length];
+        domain    = new Class [attribute.length];
+
+        for (int j = 0; j < groupAttr.length; j++) {
+            groupCols [j] = column (groupAttr [j], tAttribute);
+            attribute [j] = groupAttr [j];
+            domain [j]    = tDomain [groupCols [j]];
+        } // for
+
+        for (int i = 0; i < aggregates.length; i++) {
+            String agg  = aggregates [i].trim ();
+            int    open = agg.indexOf ('(');
+            if (open < 1 || ! agg.endsWith (")")) {
+                throw new IllegalArgumentException ("groupBy: malformed aggregate - " + agg);
+            } // if
+            fn [i] = Arrays.asList (FUNCTION).indexOf (agg.substring (0, open).toLowerCase ());
+            String col = agg.substring (open + 1, agg.length () - 1).trim ();
+            if (fn [i] < 0) throw new IllegalArgumentException ("groupBy: unknown aggregate - " + agg);
+
+            int k = groupAttr.length + i;
+            if (col.equals ("*")) {
+                if (fn [i] != COUNT) throw new IllegalArgumentException ("groupBy: only count takes * - " + agg);
+                aggCols [i]   = -1;
+                attribute [k] = "count";
+                domain [k]    = Long.class;
+                continue;
+            } // if
+
+            aggCols [i]   = column (col, tAttribute);
+            Class dom     = tDomain [aggCols [i]];
+            real [i]      = dom == Float.class || dom == Double.class;
+            attribute [k] = FUNCTION [fn [i]] + "_" + col;
+            boolean numeric = real [i] || dom == Integer.class || dom == Long.class || dom == Short.class;
+            if ((fn [i] == SUM || fn [i] == AVG) && ! numeric) {
+                throw new IllegalArgumentException ("groupBy: " + agg + " needs a numeric column");
+            } // if
+            switch (fn [i]) {
+            case COUNT: domain [k] = Long.class;                          break;
+            case SUM:   domain [k] = real [i] ? Double.class : Long.class; break;
+            case AVG:   domain [k] = Double.class;                         break;
+            default:    domain [k] = dom;                                 break;
+            } // switch
+        } // for
+    } // constructor
+
+    /***************************************************************************
+     * Aggregate the input tuples, appending one tuple per group to the result.
+     * @param input   the tuples to aggregate
+     * @param result  the table receiving the groups
+     */
+    void aggregate (Iterator <Comparable []> input, Table result)
+    {
+        try {
+            aggregate (input, result, 0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("HashAggregate.aggregate: partition I/O failed", ex);
+        } // try
+    } // aggregate
+
+    /***************************************************************************
+     * Aggregate the input tuples at the given partitioning depth.
+     * @param input   the tuples to aggregate
+     * @param result  the table receiving the groups
+     * @param depth   the number of times these tuples have been partitioned
+     */
+    private void aggregate (Iterator <Comparable []> input, Table result, int depth) throws IOException
+    {
+        Groups      groups = new Groups (depth < MAX_DEPTH ? maxGroups : Integer.MAX_VALUE);
+        Partition [] parts = null;
+
+        try {
+            while (input.hasNext ()) {
+                Comparable [] tup  = input.next ();
+                Comparable [] gVal = new Comparable [groupCols.length];
+                for (int j = 0; j < gVal.length; j++) gVal [j] = tup [groupCols [j]];
+                KeyType gKey = KeyType.of (gVal);
+                int     h    = scramble (gKey.hashCode ());
+
+                int slot = groups.find (gKey, gVal, h);
+                if (slot >= 0) {
+                    groups.accumulate (slot, tup);
+                } else {
+                    if (parts == null) parts = new Partition [FANOUT];
+                    int p = (h >>> (32 - BITS * (depth + 1))) & (FANOUT - 1);
+                    if (parts [p] == null) parts [p] = new Partition ();
+                    parts [p].write (tup);
+                } // if
+            } // while
+
+            groups.emit (result);
+            groups = null;
+
+            if (parts != null) {
+                for (Partition part : parts) {
+                    if (part != null) aggregate (part.read (), result, depth + 1);
+                } // for
+            } // if
+        } finally {
+            if (parts != null) for (Partition part : parts) if (part != null) part.delete ();
+        } // try
+    } // aggregate
+
+    /***************************************************************************
+     * Open-addressing (linear probing) hash table of groups and their running
+     * aggregates.
+     */
+    private class Groups
+    {
+        private final int     limit;
+        private KeyType []    keys;
+        private Comparable [][] gVals;
+        private int []        hashes;
+        private int           size;
+        private long []       count;
+        private long [][]     lSum;
+        private double [][]   dSum;
+        private Comparable [][] ext;
+
+        Groups (int _limit)
+        {
+            limit = _limit;
+            allocate (16);
+        } // constructor
+
+        private void allocate (int capacity)
+        {
+            keys   = new KeyType [capacity];
+            gVals  = new Comparable [capacity][];
+            hashes = new int [capacity];
+            count  = new long [capacity];
+            lSum   = new long [fn.length][capacity];
+            dSum   = new double [fn.length][capacity];
+            ext    = new Comparable [fn.length][capacity];
+        } // allocate
+
+        /***********************************************************************
+         * Find the slot of the group, inserting it if there is room.
+         * @return  the slot, or -1 if the group is absent and the table is full
+         */
+        int find (KeyType gKey, Comparable [] gVal, int h)
+        {
+            int mask = keys.length - 1;
+            for (int i = h & mask; ; i = (i + 1) & mask) {
+                if (keys [i] == null) {
+                    if (size >= limit) return -1;
+                    keys [i] = gKey; gVals [i] = gVal; hashes [i] = h;
+                    if (++size * 2 > keys.length) { grow (); return find (gKey, gVal, h); }
+                    return i;
+                } // if
+                if (hashes [i] == h && keys [i].equals (gKey)) return i;
+            } // for
+        } // find
+
+        private void grow ()
+        {
+            KeyType [] oKeys = keys; Comparable [][] oVals = gVals; int [] oHashes = hashes;
+            long [] oCount = count; long [][] oLSum = lSum; double [][] oDSum = dSum; Comparable [][] oExt = ext;
+            allocate (keys.length * 2);
+            int mask = keys.length - 1;
+            for (int o = 0; o < oKeys.length; o++) {
+                if (oKeys [o] == null) continue;
+                int i = oHashes [o] & mask;
+                while (keys [i] != null) i = (i + 1) & mask;
+                keys [i] = oKeys [o]; gVals [i] = oVals [o]; hashes [i] = oHashes [o]; count [i] = oCount [o];
+                for (int a = 0; a < fn.length; a++) {
+                    lSum [a][i] = oLSum [a][o]; dSum [a][i] = oDSum [a][o]; ext [a][i] = oExt [a][o];
+                } // for
+            } // for
+        } // grow
+
+        @SuppressWarnings("unchecked")
+        void accumulate (int slot, Comparable [] tup)
+        {
+            count [slot]++;
+            for (int a = 0; a < fn.length; a++) {
+                if (aggCols [a] < 0) continue;
+                Comparable v = tup [aggCols [a]];
+                switch (fn [a]) {
+                case SUM: case AVG:
+                    if (real [a]) dSum [a][slot] += ((Number) v).doubleValue ();
+                    else          lSum [a][slot] += ((Number) v).longValue ();
+                    break;
+                case MIN:
+                    if (ext [a][slot] == null || v.compareTo (ext [a][slot]) < 0) ext [a][slot] = v;
+                    break;
+                case MAX:
+                    if (ext [a][slot] == null || v.compareTo (ext [a][slot]) > 0) ext [a][slot] = v;
+                    break;
+                } // switch
+            } // for
+        } // accumulate
+
+        void emit (Table result)
+        {
+            int nG = groupCols.length;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys [i] == null) continue;
+                Comparable [] tup = Arrays.copyOf (gVals [i], nG + fn.length);
+                for (int a = 0; a < fn.length; a++) {
+                    double sum = real [a] ? dSum [a][i] : lSum [a][i];
+                    switch (fn [a]) {
+                    case COUNT: tup [nG + a] = count [i];                                    break;
+                    case SUM:   tup [nG + a] = real [a] ? (Comparable) dSum [a][i] : lSum [a][i]; break;
+                    case AVG:   tup [nG + a] = sum / count [i];                              break;
+                    default:    tup [nG + a] = ext [a][i];                                   break;
+                    } // switch
+                } // for
+                result.append (tup);
+            } // for
+        } // emit
+
+    } // Groups class
+
+    /***************************************************************************
+     * A spill partition: a temporary file of packed tuples.
+     */
+    private class Partition
+    {
+        private final File         file;
+        private final OutputStream os;
+        private long               size;
+
+        Partition () throws IOException
+        {
+            file = File.createTempFile (table.getName () + "_agg", ".tmp");
+            try {
+                os = new BufferedOutputStream (new FileOutputStream (file), BUFFER_SIZE);
+            } catch (IOException ex) {
+                file.delete ();
+                throw ex;
+            } // try
+        } // constructor
+
+        void write (Comparable [] tup) throws IOException
+        {
+            os.write (table.pack (tup));
+            size++;
+        } // write
+
+        Iterator <Comparable []> read () throws IOException
+        {
+            os.close ();
+            final DataInputStream in = new DataInputStream (new BufferedInputStream (new FileInputStream (file), BUFFER_SIZE));
+            final byte [] record = new byte [table.tupleSize ()];
+            return new Iterator <Comparable []> () {
+                private long remaining = size;
+                public boolean hasNext ()
+                {
+                    if (remaining > 0) return true;
+                    try { in.close (); } catch (IOException ex) { /* already fully read */ }
+                    return false;
+                } // hasNext
+                public Comparable [] next ()
+                {
+                    try {
+                        in.readFully (record);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException ("HashAggregate: partition read failed", ex);
+                    } // try
+                    remaining--;
+                    return table.unpack (record);
+                } // next
+            };
+        } // read
+
+        void delete ()
+        {
+            try { os.close (); } catch (IOException ex) { /* deleting anyway */ }
+            file.delete ();
+        } // delete
+
+    } // Partition class
+
+    /***************************************************************************
+     * Find the column position of an attribute, failing if it does not exist.
+     */
+    private static int column (String attr, String [] tAttribute)
+    {
+        int pos = Table.columnPos (attr, tAttribute);
+        if (pos < 0) throw new IllegalArgumentException ("groupBy: unknown attribute - " + attr);
+        return pos;
+    } // column
+
+    /***************************************************************************
+     * Scramble a hash code so both its low bits (slots) and high bits
+     * (partitions) are well distributed.
+     */
+    private static int scramble (int h)
+    {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    } // scramble
+
+} // HashAggregate class
+
@@ -0,0 +1,140 @@
+
+/*******************************************************************************
+ * @file  Histogram.java
+ */
+
+package database1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*******************************************************************************
+ * This class records a distribution of latencies (in nanoseconds) in
+ * logarithmic buckets: each power of two is split into 8 linear sub-buckets,
+ * so a percentile is reported within 12.5% of the true value while recording
+ * takes a few array increments and no allocation.  It may be recorded into
+ * from several threads (e.g., a workload driver) while being read (e.g., over
+ * JMX).
+ */
+public class Histogram
+{
+    /** Number of sub-buckets per power of two (a power of two itself).
+     */
+    private static final int SUB = 8, SUB_BITS = 3;
+
+    /** Counts per bucket (values up to 2^63).
+     */
+    private final AtomicLongArray counts = new AtomicLongArray (64 * SUB);
+
+    /** Number and sum of the recorded values.
+     */
+    private final LongAdder count = new LongAdder (), sum = new LongAdder ();
+
+    /** Largest recorded value.
+     */
+    private final LongAccumulator max = new LongAccumulator (Long::max, 0);
+
+    /***************************************************************************
+     * Record a value.
+     * @param nanos  the value (negative values count as 0)
+     */
+    public void record (long nanos)
+    {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet (bucket (nanos));
+        count.increment ();
+        sum.add (nanos);
+        max.accumulate (nanos);
+    } // record
+
+    /***************************************************************************
+     * Return the number of recorded values.
+     * @return  the count
+     */
+    public long count ()
+    {
+        return count.sum ();
+    } // count
+
+    /***************************************************************************
+     * Return the mean of the recorded values.
+     * @return  the mean (0 if none)
+     */
+    public double mean ()
+    {
+        long n = count.sum ();
+        return n == 0 ? 0 : (double) sum.sum () / n;
+    } // mean
+
+    /***************************************************************************
+     * Return the largest recorded value.
+     * @return  the maximum (0 if none)
+     */
+    public long max ()
+    {
+        return max.get ();
+    } // max
+
+    /***************************************************************************
+     * Return (an upper bound of the bucket holding) the value below which the
+     * given fraction of the recorded values lie.
+     * @param p  the fraction, e.g., 0.99 for the 99th percentile
+     * @return  the percentile (0 if none)
+     */
+    public long percentile (double p)
+    {
+        long n = count.sum ();
+        if (n == 0) return 0;
+        long rank = Math.max (1, (long) Math.ceil (p * n)), seen = 0;
+        for (int b = 0; b < counts.length (); b++) {
+            seen += counts.get (b);
+            if (seen >= rank) return Math.min (max.get (), upper (b));
+        } // for
+        return max.get ();
+    } // percentile
+
+    /***************************************************************************
+     * Clear the histogram.
+     */
+    public void reset ()
+    {
+        for (int b = 0; b < counts.length (); b++) counts.set (b, 0);
+        count.reset ();
+        sum.reset ();
+        max.reset ();
+    } // reset
+
+    /***************************************************************************
+     * Return a summary of the distribution in microseconds.
+     * @return  the count, mean and percentiles
+     */
+    public String toString ()
+    {
+        return String.format ("n = %d, mean = %.1f us, p50 = %.1f us, p99 = %.1f us, p999 = %.1f us, max = %.1f us",
+                              count (), mean () / 1e3, percentile (0.5) / 1e3, percentile (0.99) / 1e3,
+                              percentile (0.999) / 1e3, max () / 1e3);
+    } // toString
+
+    /***************************************************************************
+     * Return the bucket of a value: values below SUB get their own bucket, and
+     * above that the top SUB_BITS + 1 bits pick the power of two and sub-bucket.
+     */
+    private static int bucket (long v)
+    {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros (v);                     // >= SUB_BITS
+        return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+    } // bucket
+
+    /***************************************************************************
+     * Return the largest value falling in bucket b.
+     */
+    private static long upper (int b)
+    {
+        if (b < SUB) return b;
+        int exp = b / SUB + SUB_BITS - 1, sub = b % SUB;
+        return ((long) (SUB + sub + 1) << (exp - SUB_BITS)) - 1;
+    } // upper
+
+} // Histogram class
@@ -0,0 +1,82 @@
+
+/*******************************************************************************
+ * @file  HyperLogLog.java
+ */
+
+package database1;
+
+/*******************************************************************************
+ * This class implements the HyperLogLog sketch for estimating the number of
+ * distinct values in a column using a fixed, small amount of memory (one byte
+ * per register).  The estimate has a standard error of about 1.04 / sqrt (m).
+ */
+public class HyperLogLog
+{
+    /** Number of index bits (m = 2^P registers).
+     */
+    private static final int P = 12;
+    private static final int M = 1 << P;
+
+    /** Bias correction constant for m registers.
+     */
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    /** The registers (maximum leading-zero rank seen per bucket).
+     */
+    private final byte [] register = new byte [M];
+
+    /***************************************************************************
+     * Add a value to the sketch.
+     * @param value  the value to add
+     */
+    public void add (Object value)
+    {
+        long h   = hash (value);
+        int  idx = (int) (h >>> (64 - P));
+        int  rnk = Long.numberOfLeadingZeros ((h << P) | (1L << (P - 1))) + 1;
+        if (rnk > register [idx]) register [idx] = (byte) rnk;
+    } // add
+
+    /***************************************************************************
+     * Estimate the number of distinct values added.
+     * @return  the estimated cardinality
+     */
+    public long estimate ()
+    {
+        double sum   = 0.0;
+        int    zeros = 0;
+        for (byte r : register) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        } // for
+        double e = ALPHA * M * M / sum;
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log ((double) M / zeros);   // linear counting
+        return Math.round (e);
+    } // estimate
+
+    /***************************************************************************
+     * Reset the sketch to empty.
+     */
+    public void clear ()
+    {
+        java.util.Arrays.fill (register, (byte) 0);
+    } // clear
+
+    /***************************************************************************
+     * Compute a well-mixed 64-bit hash of a value (MurmurHash3 finalizer).
+     * @param value  the value
+     * @return  the hash
+     */
+    private static long hash (Object value)
+    {
+        long h = (value.hashCode () + 0x632BE59BD9B4E019L) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+        return h;
+    } // hash
+
+} // HyperLogLog class
+
@@ -0,0 +1,33 @@
+
+/*******************************************************************************
+ * @file  JoinMethod.java
+ */
+
+package database1;
+
+/*******************************************************************************
+ * The join methods available to Operator.Join (and chosen by JoinOptimizer).
+ */
+public enum JoinMethod
+{
+    /** Compare every left tuple with every (buffered) right tuple; works for any
+     *  condition.
+     */
+    NESTED_LOOP,
+
+    /** Probe the right table's index with each left tuple; needs the right input
+     *  to be a scan of a table keyed on the (single) right join attribute.
+     */
+    INDEX,
+
+    /** Build a hash table on the right input and probe it with the left; needs
+     *  a single-attribute equi-join.
+     */
+    HASH,
+
+    /** Merge the two inputs; needs a single-attribute equi-join with both inputs
+     *  sorted (ascending) on their join attributes.
+     */
+    MERGE
+
+} // JoinMethod enum
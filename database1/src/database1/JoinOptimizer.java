@@ -0,0 +1,274 @@
+
+/*******************************************************************************
+ * @file  JoinOptimizer.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class chooses the order and methods for joining several tables on
+ * equality conditions, e.g.,
+ *   JoinOptimizer.optimize (new Table [] { movieStar, starsIn, movie, studio },
+ *                           "movieStar.name == starsIn.starName",
+ *                           "starsIn.movieTitle == movie.title",
+ *                           "movie.studioName == studio.name")
+ * An attribute is named "table.attribute", or just "attribute" when only one of
+ * the tables has it.  Left-deep join trees are enumerated by dynamic programming
+ * over subsets of the tables (or built greedily when there are too many tables),
+ * never forming a cross product.  Result sizes are estimated from the tables'
+ * statistics (row counts and distinct counts, see TableStats) and each join
+ * uses the cheapest applicable method (see JoinMethod).  The attributes of the
+ * result come in the chosen join order, so project onto the ones needed.
+ */
+public class JoinOptimizer
+{
+    /** Largest number of tables ordered by dynamic programming (beyond it, greedily).
+     */
+    private static final int DP_LIMIT = 10;
+
+    /***************************************************************************
+     * An equality condition between attributes of two of the tables.
+     */
+    private static class Predicate
+    {
+        final int t1, c1, t2, c2;              // table and column on each side
+
+        Predicate (int _t1, int _c1, int _t2, int _c2) { t1 = _t1; c1 = _c1; t2 = _t2; c2 = _c2; }
+
+        boolean joins (int mask, int t)
+        {
+            return (t1 == t && (mask >> t2 & 1) != 0) || (t2 == t && (mask >> t1 & 1) != 0);
+        } // joins
+
+    } // Predicate class
+
+    /***************************************************************************
+     * A plan joining a subset of the tables, with the origin of each of its
+     * output attributes (for naming them in later conditions).
+     */
+    private static class Partial
+    {
+        final Plan      plan;
+        final int       mask;                  // the tables joined
+        final String [] attr;                  // output attribute names
+        final int []    tab;                   // table of each output attribute
+        final int []    col;                   // column (in that table) of each output attribute
+        final double    rows;                  // estimated result size
+        final double    cost;                  // estimated total cost
+
+        Partial (Plan _plan, int _mask, String [] _attr, int [] _tab, int [] _col, double _rows, double _cost)
+        {
+            plan = _plan; mask = _mask; attr = _attr; tab = _tab; col = _col; rows = _rows; cost = _cost;
+            plan.estRows = rows;
+        } // constructor
+
+        int pos (int t, int c)
+        {
+            for (int i = 0; i < tab.length; i++) if (tab [i] == t && col [i] == c) return i;
+            return -1;
+        } // pos
+
+    } // Partial class
+
+    /***************************************************************************
+     * Build a plan joining the tables on the given conditions, choosing the join
+     * order and the join method for each join.
+     * @param tables      the tables to join
+     * @param conditions  equality conditions between attributes of two tables
+     *                    (each may be a conjunction of them)
+     * @return  the (unexecuted) plan
+     */
+    public static Plan optimize (Table [] tables, String... conditions)
+    {
+        if (tables.length == 0 || tables.length > 30) {
+            throw new IllegalArgumentException ("JoinOptimizer: cannot join " + tables.length + " tables");
+        } // if
+        List <Predicate> preds = new ArrayList <> ();
+        for (String cond : conditions) {
+            for (String c : Plan.conjuncts (cond)) preds.add (parse (tables, c));
+        } // for
+
+        Partial best = tables.length <= DP_LIMIT ? dynamic (tables, preds) : greedy (tables, preds);
+        if (best == null) {
+            throw new IllegalArgumentException ("JoinOptimizer: the conditions do not connect all the tables" +
+                                                " (or every order gives clashing attribute names)");
+        } // if
+        return best.plan;
+    } // optimize
+
+    /***************************************************************************
+     * Find the cheapest left-deep plan by dynamic programming over the subsets
+     * of the tables, in order of size.
+     */
+    private static Partial dynamic (Table [] tables, List <Predicate> preds)
+    {
+        int       n    = tables.length;
+        Partial [] best = new Partial [1 << n];
+        for (int t = 0; t < n; t++) best [1 << t] = base (tables, t);
+
+        for (int size = 1; size < n; size++) {
+            for (int mask = 1; mask < best.length; mask++) {
+                if (Integer.bitCount (mask) != size || best [mask] == null) continue;
+                for (int t = 0; t < n; t++) {
+                    if ((mask >> t & 1) != 0) continue;
+                    Partial p = extend (best [mask], tables, t, preds);
+                    int     m = mask | 1 << t;
+                    if (p != null && (best [m] == null || p.cost < best [m].cost)) best [m] = p;
+                } // for
+            } // for
+        } // for
+        return best [best.length - 1];
+    } // dynamic
+
+    /***************************************************************************
+     * Build a plan greedily: start with the smallest table and repeatedly join
+     * the table giving the cheapest next plan.
+     */
+    private static Partial greedy (Table [] tables, List <Predicate> preds)
+    {
+        int first = 0;
+        for (int t = 1; t < tables.length; t++) {
+            if (tables [t].getStats ().rows () < tables [first].getStats ().rows ()) first = t;
+        } // for
+        Partial cur = base (tables, first);
+        for (int k = 1; k < tables.length && cur != null; k++) {
+            Partial next = null;
+            for (int t = 0; t < tables.length; t++) {
+                if ((cur.mask >> t & 1) != 0) continue;
+                Partial p = extend (cur, tables, t, preds);
+                if (p != null && (next == null || p.cost < next.cost)) next = p;
+            } // for
+            cur = next;
+        } // for
+        return cur;
+    } // greedy
+
+    /***************************************************************************
+     * Return the plan for scanning table t.
+     */
+    private static Partial base (Table [] tables, int t)
+    {
+        String [] attr = tables [t].scan ().attribute;
+        int []    tab  = new int [attr.length];
+        int []    col  = new int [attr.length];
+        for (int j = 0; j < attr.length; j++) { tab [j] = t; col [j] = j; }
+        double rows = tables [t].getStats ().rows ();
+        return new Partial (Plan.scan (tables [t]), 1 << t, attr, tab, col, rows, rows);
+    } // base
+
+    /***************************************************************************
+     * Join table t onto the partial plan p, using the cheapest method.
+     * @return  the extended plan, or null if no condition connects t to p or the
+     *          result's attribute names would clash
+     */
+    private static Partial extend (Partial p, Table [] tables, int t, List <Predicate> preds)
+    {
+        Table     r     = tables [t];
+        String [] rAttr = r.scan ().attribute;
+        String [] attr  = Arrays.copyOf (p.attr, p.attr.length + rAttr.length);
+        int []    tab   = Arrays.copyOf (p.tab, attr.length);
+        int []    col   = Arrays.copyOf (p.col, attr.length);
+        for (int j = 0; j < rAttr.length; j++) {
+            int i = p.attr.length + j;
+            attr [i] = Table.columnPos (rAttr [j], p.attr) != -1 ? r.getName ().charAt (0) + "_" + rAttr [j] : rAttr [j];
+            tab [i]  = t;
+            col [i]  = j;
+        } // for
+        if (new HashSet <> (Arrays.asList (attr)).size () < attr.length) return null;
+
+        List <String> conds = new ArrayList <> ();
+        double        sel   = 1.0;
+        Predicate     first = null;
+        for (Predicate pr : preds) {
+            if (! pr.joins (p.mask, t)) continue;
+            boolean leftIs1 = pr.t2 == t;
+            int     lPos    = leftIs1 ? p.pos (pr.t1, pr.c1) : p.pos (pr.t2, pr.c2);
+            int     rCol    = leftIs1 ? pr.c2 : pr.c1;
+            conds.add (attr [lPos] + " == " + attr [p.attr.length + rCol]);
+            sel /= Math.max (distinct (tables, pr.t1, pr.c1), distinct (tables, pr.t2, pr.c2));
+            if (first == null) first = pr;
+        } // for
+        if (first == null) return null;
+
+        double L    = p.rows, R = r.getStats ().rows ();
+        double rows = L * R * sel;
+        String lJoin = conds.get (0).split (" ") [0];
+        String rJoin = rAttr [first.t2 == t ? first.c2 : first.c1];
+
+        JoinMethod method = JoinMethod.HASH;
+        double     cost   = L + 2 * R;
+        if (L * R < cost) { method = JoinMethod.NESTED_LOOP; cost = L * R; }
+        if (keyedOn (r, rJoin) && L * log2 (R + 2) < cost) {
+            method = JoinMethod.INDEX;
+            cost   = L * log2 (R + 2);
+        } // if
+        if (p.plan instanceof Plan.Scan && keyedOn (((Plan.Scan) p.plan).table, lJoin) &&
+            keyedOn (r, rJoin) && L + R < cost) {
+            method = JoinMethod.MERGE;                  // both scans come sorted on their keys
+            cost   = L + R;
+        } // if
+
+        Plan scan = Plan.scan (r);
+        scan.estRows = R;
+        Plan plan = new Plan.Join (p.plan, conds.get (0), scan, method);
+        plan.estRows = rows;
+        if (conds.size () > 1) plan = plan.select (String.join (" & ", conds.subList (1, conds.size ())));
+        return new Partial (plan, p.mask | 1 << t, attr, tab, col, rows, p.cost + cost + rows);
+    } // extend
+
+    /***************************************************************************
+     * Parse an equality condition "a == b" between attributes of two tables.
+     */
+    private static Predicate parse (Table [] tables, String condition)
+    {
+        String [] tok = condition.trim ().split ("\\s+");
+        if (tok.length != 3 || ! tok [1].equals ("==")) {
+            throw new IllegalArgumentException ("JoinOptimizer: not an equality condition: " + condition);
+        } // if
+        int [] a = resolve (tables, tok [0]), b = resolve (tables, tok [2]);
+        if (a [0] == b [0]) {
+            throw new IllegalArgumentException ("JoinOptimizer: condition on a single table: " + condition);
+        } // if
+        return new Predicate (a [0], a [1], b [0], b [1]);
+    } // parse
+
+    /***************************************************************************
+     * Resolve "table.attribute" or a unique "attribute" to { table, column }.
+     */
+    private static int [] resolve (Table [] tables, String name)
+    {
+        int    dot   = name.indexOf ('.');
+        String tName = dot < 0 ? null : name.substring (0, dot);
+        String aName = name.substring (dot + 1);
+        int [] found = null;
+        for (int t = 0; t < tables.length; t++) {
+            if (tName != null && ! tables [t].getName ().equals (tName)) continue;
+            int c = Table.columnPos (aName, tables [t].scan ().attribute);
+            if (c == -1) continue;
+            if (found != null) throw new IllegalArgumentException ("JoinOptimizer: ambiguous attribute " + name);
+            found = new int [] { t, c };
+        } // for
+        if (found == null) throw new IllegalArgumentException ("JoinOptimizer: unknown attribute " + name);
+        return found;
+    } // resolve
+
+    private static boolean keyedOn (Table table, String attr)
+    {
+        String [] key = table.scan ().key;
+        return key.length == 1 && key [0].equals (attr);
+    } // keyedOn
+
+    private static double distinct (Table [] tables, int t, int c)
+    {
+        TableStats stats = tables [t].getStats ();
+        return Math.max (1, stats.column (tables [t].scan ().attribute [c]).distinct ());
+    } // distinct
+
+    private static double log2 (double x)
+    {
+        return Math.log (x) / Math.log (2);
+    } // log2
+
+} // JoinOptimizer class
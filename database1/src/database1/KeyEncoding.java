@@ -0,0 +1,193 @@
+
+/*******************************************************************************
+ * @file  KeyEncoding.java
+ */
+
+package database1;
+
+import static java.lang.System.out;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class provides an order-preserving binary encoding of keys.  Comparing
+ * two encoded keys as unsigned byte strings gives the same order as comparing
+ * the keys with KeyType.compareTo, so index pages may store keys as bytes and
+ * compare them in place without deserializing.  Each attribute is encoded as:
+ *   Byte, Short, Integer, Long:  big-endian two's complement with the sign bit
+ *                                flipped (1, 2, 4, 8 bytes)
+ *   Float, Double:               IEEE bits, all bits flipped if negative, else
+ *                                only the sign bit flipped (4, 8 bytes)
+ *   Character:                   big-endian UTF-16 code unit (2 bytes)
+ *   String:                      each UTF-16 code unit in UTF-8 form (1 to 3
+ *                                bytes, which preserves code unit order), with
+ *                                0x00 escaped as 0x00 0xFF, then the terminator
+ *                                0x00 0x00
+ * Fixed-width and terminated fields make the concatenation of the attributes
+ * order-preserving for composite keys.
+ */
+public class KeyEncoding
+{
+    /***************************************************************************
+     * Encode a key.
+     * @param k  the key to encode
+     * @return  the normalized (byte-comparable) form of the key
+     */
+    public static byte [] encode (KeyType k)
+    {
+        int size = 0;
+        for (int i = 0; i < k.arity (); i++) size += encodedSize (k.value (i));
+
+        byte [] b = new byte [size];
+        int     p = 0;
+        for (int i = 0; i < k.arity (); i++) p = encode (k.value (i), b, p);
+        return b;
+    } // encode
+
+    /***************************************************************************
+     * Compare two encoded keys stored in byte ranges (negative => less than,
+     * zero => equals, positive => greater than).
+     * @param a      the array holding the first key
+     * @param aFrom  the start of the first key (inclusive)
+     * @param aTo    the end of the first key (exclusive)
+     * @param b      the array holding the second key
+     * @param bFrom  the start of the second key (inclusive)
+     * @param bTo    the end of the second key (exclusive)
+     * @return  resultant integer that's negative, zero or positive
+     */
+    public static int compare (byte [] a, int aFrom, int aTo, byte [] b, int bFrom, int bTo)
+    {
+        return Arrays.compareUnsigned (a, aFrom, aTo, b, bFrom, bTo);
+    } // compare
+
+    /***************************************************************************
+     * Compare two encoded keys.
+     * @param a  the first key
+     * @param b  the second key
+     * @return  resultant integer that's negative, zero or positive
+     */
+    public static int compare (byte [] a, byte [] b)
+    {
+        return Arrays.compareUnsigned (a, b);
+    } // compare
+
+    /***************************************************************************
+     * Determine the number of bytes needed to encode an attribute value.
+     * @param v  the attribute value
+     * @return  the encoded size in bytes
+     */
+    private static int encodedSize (Comparable v)
+    {
+        if (v instanceof Integer || v instanceof Float)   return 4;
+        if (v instanceof Long    || v instanceof Double)  return 8;
+        if (v instanceof Short   || v instanceof Character) return 2;
+        if (v instanceof Byte)                            return 1;
+        if (v instanceof String) {
+            String s = (String) v;
+            int    n = 2;                                 // terminator
+            for (int i = 0; i < s.length (); i++) {
+                char c = s.charAt (i);
+                n += c == 0 ? 2 : c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            } // for
+            return n;
+        } // if
+        throw new IllegalArgumentException ("KeyEncoding: unsupported domain " + v.getClass ().getName ());
+    } // encodedSize
+
+    /***************************************************************************
+     * Encode an attribute value into b starting at position p.
+     * @param v  the attribute value
+     * @param b  the destination array
+     * @param p  the position to start at
+     * @return  the position following the encoded value
+     */
+    private static int encode (Comparable v, byte [] b, int p)
+    {
+        if (v instanceof Integer) return putInt (((Integer) v) ^ Integer.MIN_VALUE, b, p);
+        if (v instanceof Long)    return putLong (((Long) v) ^ Long.MIN_VALUE, b, p);
+        if (v instanceof Short)   return putShort ((short) (((Short) v) ^ Short.MIN_VALUE), b, p);
+        if (v instanceof Byte)    { b [p] = (byte) (((Byte) v) ^ Byte.MIN_VALUE); return p + 1; }
+        if (v instanceof Character) return putShort ((short) ((Character) v).charValue (), b, p);
+        if (v instanceof Float) {
+            int bits = Float.floatToIntBits ((Float) v);
+            return putInt (bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE, b, p);
+        } // if
+        if (v instanceof Double) {
+            long bits = Double.doubleToLongBits ((Double) v);
+            return putLong (bits < 0 ? ~bits : bits ^ Long.MIN_VALUE, b, p);
+        } // if
+
+        String s = (String) v;
+        for (int i = 0; i < s.length (); i++) {
+            char c = s.charAt (i);
+            if (c == 0) {
+                b [p++] = 0; b [p++] = (byte) 0xFF;
+            } else if (c < 0x80) {
+                b [p++] = (byte) c;
+            } else if (c < 0x800) {
+                b [p++] = (byte) (0xC0 | (c >>> 6));
+                b [p++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                b [p++] = (byte) (0xE0 | (c >>> 12));
+                b [p++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                b [p++] = (byte) (0x80 | (c & 0x3F));
+            } // if
+        } // for
+        b [p++] = 0; b [p++] = 0;
+        return p;
+    } // encode
+
+    private static int putShort (short x, byte [] b, int p)
+    {
+        b [p] = (byte) (x >>> 8); b [p + 1] = (byte) x;
+        return p + 2;
+    } // putShort
+
+    private static int putInt (int x, byte [] b, int p)
+    {
+        for (int i = 3; i >= 0; i--) { b [p + i] = (byte) x; x >>>= 8; }
+        return p + 4;
+    } // putInt
+
+    private static int putLong (long x, byte [] b, int p)
+    {
+        for (int i = 7; i >= 0; i--) { b [p + i] = (byte) x; x >>>= 8; }
+        return p + 8;
+    } // putLong
+
+    /***************************************************************************
+     * The main method is used for testing purposes only: it checks that the
+     * encoded order agrees with KeyType.compareTo for sample keys.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        Comparable [][] samples = {
+            { "Star_Wars", 1977 }, { "Star_Wars", 1980 }, { "Star_Wars_2", 1980 }, { "Star", -5 },
+            { "", 0 }, { "Rocky", Integer.MIN_VALUE }, { "Rocky", Integer.MAX_VALUE }, { "a\u0000b", 1 },
+            { "a", 1 }, { "\u00e9t\u00e9", 2 }, { "\uffff", 3 }, { "\ud83c\udfac", 3 }
+        };
+        Comparable [][] reals = { { -1.5 }, { -0.0 }, { 0.0 }, { 2.25 }, { Double.NEGATIVE_INFINITY },
+                                  { Double.POSITIVE_INFINITY }, { Double.MIN_VALUE }, { -Double.MAX_VALUE } };
+
+        int errors = check (samples) + check (reals);
+        out.println ("KeyEncoding: " + errors + " ordering errors");
+    } // main
+
+    private static int check (Comparable [][] keys)
+    {
+        int errors = 0;
+        for (Comparable [] k1 : keys) {
+            for (Comparable [] k2 : keys) {
+                KeyType a = KeyType.of (k1), b = KeyType.of (k2);
+                if (Integer.signum (a.compareTo (b)) != Integer.signum (compare (encode (a), encode (b)))) {
+                    out.println ("order mismatch: " + a + " vs " + b);
+                    errors++;
+                } // if
+            } // for
+        } // for
+        return errors;
+    } // check
+
+} // KeyEncoding class
+
@@ -13,15 +13,22 @@ import static java.lang.System.out;
 /*******************************************************************************
  * The KeyType class provides a key type for handling both non-composite and
  * composite keys.  A key is a minimal set of attributes that can be used to
- * uniquely identify a tuple.
+ * uniquely identify a tuple.  Use the factory method of to create keys: the
+ * common single Integer and single String keys get the specialized subclasses
+ * IntKey and StringKey, which compare and hash without looping over an array.
  */
 public class KeyType
        implements Comparable <KeyType>
 {
     /** Array holding the attribute values for a particular key
+     *  (null in the specialized subclasses)
      */
     private final Comparable [] key;
 
+    /** Cached hash code (0 until computed)
+     */
+    private int hash;
+
     /***************************************************************************
      * Construct an instance of KeyType from a Comparable array.  
      * @param _key  the primary key
@@ -31,6 +38,40 @@ public class KeyType
          key = _key;
     } // constructor
 
+    /***************************************************************************
+     * Create a key from a Comparable array, using a specialized key class for a
+     * single Integer or String attribute.
+     * @param _key  the primary key
+     * @return  the key
+     */
+    public static KeyType of (Comparable [] _key)
+    {
+        if (_key.length == 1) {
+            if (_key [0] instanceof Integer) return new IntKey ((Integer) _key [0]);
+            if (_key [0] instanceof String)  return new StringKey ((String) _key [0]);
+        } // if
+        return new KeyType (_key);
+    } // of
+
+    /***************************************************************************
+     * Return the number of attributes in the key.
+     * @return  the number of attributes
+     */
+    public int arity ()
+    {
+        return key.length;
+    } // arity
+
+    /***************************************************************************
+     * Return the ith attribute value of the key.
+     * @param i  the position of the attribute within the key
+     * @return  the attribute value
+     */
+    public Comparable value (int i)
+    {
+        return key [i];
+    } // value
+
     /***************************************************************************
      * Compare two keys (negative => less than, zero => equals,
      *                   positive => greater than).
@@ -40,37 +81,65 @@ public class KeyType
     @SuppressWarnings("unchecked")
     public int compareTo (KeyType k)
     {
-        for (int i = 0; i < key.length; i++) {
-            if (key [i].compareTo (k.key [i]) < 0) return -1;
-            if (key [i].compareTo (k.key [i]) > 0) return 1;
+        for (int i = 0; i < arity (); i++) {
+            int c = value (i).compareTo (k.value (i));
+            if (c != 0) return c;
         } // for
         return 0;
     } // compareTo
     
-    
-    
     /***************************************************************************
      * Determine whether two keys are equal (equals must agree with compareTo).
-     * @param k  the other key (to compare with this)
+     * @param o  the other key (to compare with this)
      * @return  true if equal, false otherwise
      */
-    public boolean equals (KeyType k)
+    public boolean equals (Object o)
     {
-        return compareTo (k) == 0;
+        if (this == o) return true;
+        if (! (o instanceof KeyType)) return false;
+        KeyType k = (KeyType) o;
+        return arity () == k.arity () && hashCode () == k.hashCode () && compareTo (k) == 0;
     } // equals
 
     /***************************************************************************
      * Compute a hash code for this object (equal objects should produce the same
-     * hash code).
+     * hash code).  The hash code is computed once and cached.
      * @return  an integer hash code value
      */
     public int hashCode ()
     {
-        int sum = 0;
-        for (int i = 0; i < key.length; i++) sum = 7 * sum + key [i].hashCode ();
+        int sum = hash;
+        if (sum == 0) {
+            for (int i = 0; i < key.length; i++) sum = 7 * sum + key [i].hashCode ();
+            hash = sum;
+        } // if
         return sum;
     } // hashCode
 
+    /***************************************************************************
+     * Compute the hash code that the key formed from the given columns of a
+     * tuple would have, without forming the key.
+     * @param tup   the tuple
+     * @param cols  the positions of the key attributes in the tuple
+     * @return  the key's hash code
+     */
+    static int hashOf (Comparable [] tup, int [] cols)
+    {
+        int sum = 0;
+        for (int c : cols) sum = 7 * sum + tup [c].hashCode ();
+        return sum;
+    } // hashOf
+
+    /***************************************************************************
+     * Return the normalized (byte-comparable) encoding of the key, whose unsigned
+     * byte order agrees with compareTo (see KeyEncoding).
+     * @return  the encoded key
+     */
+    public byte [] normalize ()
+    {
+        return KeyEncoding.encode (this);
+    } // normalize
+
     /***************************************************************************
      * Convert the key to a string.
      * @return  the string representation of the key
@@ -78,10 +147,74 @@ public class KeyType
     public String toString ()
     {
         String s = "Key (";
-        for (int i = 0; i < key.length; i++) s += " " + key [i];
+        for (int i = 0; i < arity (); i++) s += " " + value (i);
         return s + (" )");
     } // toString
 
+    /***************************************************************************
+     * Key consisting of a single Integer attribute.
+     */
+    static final class IntKey
+           extends KeyType
+    {
+        private final int value;
+
+        IntKey (int _value)
+        {
+            super (null);
+            value = _value;
+        } // constructor
+
+        public int arity ()                  { return 1; }
+        public Comparable value (int i)      { return value; }
+        public int hashCode ()               { return value; }   // same as Integer.hashCode
+
+        public int compareTo (KeyType k)
+        {
+            if (k instanceof IntKey) return Integer.compare (value, ((IntKey) k).value);
+            return super.compareTo (k);
+        } // compareTo
+
+        public boolean equals (Object o)
+        {
+            if (o instanceof IntKey) return value == ((IntKey) o).value;
+            return super.equals (o);
+        } // equals
+
+    } // IntKey class
+
+    /***************************************************************************
+     * Key consisting of a single String attribute.
+     */
+    static final class StringKey
+           extends KeyType
+    {
+        private final String value;
+
+        StringKey (String _value)
+        {
+            super (null);
+            value = _value;
+        } // constructor
+
+        public int arity ()                  { return 1; }
+        public Comparable value (int i)      { return value; }
+        public int hashCode ()               { return value.hashCode (); }   // cached by String
+
+        public int compareTo (KeyType k)
+        {
+            if (k instanceof StringKey) return value.compareTo (((StringKey) k).value);
+            return super.compareTo (k);
+        } // compareTo
+
+        public boolean equals (Object o)
+        {
+            if (o instanceof StringKey) return value.equals (((StringKey) o).value);
+            return super.equals (o);
+        } // equals
+
+    } // StringKey class
+
     /***************************************************************************
      * The main method is used for testing purposes only.
      * @param args  the command-line arguments
@@ -117,6 +250,15 @@ public class KeyType
                      (key1.hashCode () == key2.hashCode ()));
         out.println ("key1.hashCode () == key3.hashCode (): " +
                      (key1.hashCode () == key3.hashCode ()));
+        out.println ();
+
+        KeyType key4 = KeyType.of ( new Comparable [] { 9999 } );
+        KeyType key5 = KeyType.of ( new Comparable [] { "Fox" } );
+        out.println ("key4 = " + key4 + " is " + key4.getClass ().getSimpleName ());
+        out.println ("key5 = " + key5 + " is " + key5.getClass ().getSimpleName ());
+        out.println ("key4.equals (new KeyType (9999)): " + key4.equals (new KeyType (new Comparable [] { 9999 })));
+        out.println ("key5.equals (new KeyType (Fox)): "  + key5.equals (new KeyType (new Comparable [] { "Fox" })));
+        out.println ("key5 < KeyType.of (Universal): "    + (key5.compareTo (KeyType.of (new Comparable [] { "Universal" })) < 0));
     } // main
 
 } // KeyType class
@@ -0,0 +1,126 @@
+
+/*******************************************************************************
+ * @file  Log.java
+ */
+
+package database1;
+
+import java.io.PrintStream;
+import java.util.concurrent.*;
+
+/*******************************************************************************
+ * This class logs the statements run against the database (DDL, RA and DML
+ * lines) to standard output.  It is off by default; the level is set with
+ * -Ddatabase1.log=info (DDL and RA operators) or =debug (also each insert), or
+ * by setLevel.  Callers check enabled (level) before building a message, so a
+ * disabled log costs one comparison.  Messages are queued and written by a
+ * daemon thread, so logging does not block on the console; flush waits until
+ * the queued messages are written (print does so to keep output in order).
+ */
+public class Log
+{
+    /** Logging levels.
+     */
+    public static final int OFF = 0, INFO = 1, DEBUG = 2;
+
+    /** The current level.
+     */
+    private static volatile int level = parse (System.getProperty ("database1.log", "off"));
+
+    /** The queued messages (a CountDownLatch marks a flush request).
+     */
+    private static final BlockingQueue <Object> queue = new LinkedBlockingQueue <> (1 << 16);
+
+    /** The writer thread (started on first use).
+     */
+    private static Thread writer;
+
+    /***************************************************************************
+     * Set the logging level.
+     * @param _level  OFF, INFO or DEBUG
+     */
+    public static void setLevel (int _level)
+    {
+        if (_level < OFF || _level > DEBUG) throw new IllegalArgumentException ("Log.setLevel: bad level " + _level);
+        level = _level;
+    } // setLevel
+
+    /***************************************************************************
+     * Determine whether messages of the given level are logged.
+     * @param _level  INFO or DEBUG
+     * @return  whether to log them
+     */
+    static boolean enabled (int _level)
+    {
+        return _level <= level;
+    } // enabled
+
+    /***************************************************************************
+     * Queue a message to be written (blocking only if the queue is full).
+     * @param message  the message
+     */
+    static void write (String message)
+    {
+        start ();
+        try {
+            queue.put (message);
+        } catch (InterruptedException ex) {
+            Thread.currentThread ().interrupt ();
+        } // try
+    } // write
+
+    /***************************************************************************
+     * Wait until all the queued messages have been written.
+     */
+    public static void flush ()
+    {
+        synchronized (Log.class) {
+            if (writer == null) return;
+        } // synchronized
+        CountDownLatch done = new CountDownLatch (1);
+        try {
+            queue.put (done);
+            done.await ();
+        } catch (InterruptedException ex) {
+            Thread.currentThread ().interrupt ();
+        } // try
+    } // flush
+
+    /***************************************************************************
+     * Start the writer thread, unless it is running.
+     */
+    private static synchronized void start ()
+    {
+        if (writer != null) return;
+        final PrintStream out = System.out;
+        writer = new Thread ("database1-log") {
+            public void run ()
+            {
+                try {
+                    for ( ; ; ) {
+                        Object m = queue.take ();
+                        if (m instanceof CountDownLatch) { out.flush (); ((CountDownLatch) m).countDown (); }
+                        else                             out.println (m);
+                        if (queue.isEmpty ()) out.flush ();
+                    } // for
+                } catch (InterruptedException ex) {
+                    // exit
+                } // try
+            } // run
+        };
+        writer.setDaemon (true);
+        writer.start ();
+        Runtime.getRuntime ().addShutdownHook (new Thread (Log::flush));
+    } // start
+
+    private static int parse (String name)
+    {
+        switch (name.toLowerCase ()) {
+        case "info":  return INFO;
+        case "debug": return DEBUG;
+        case "off":   return OFF;
+        default: throw new IllegalArgumentException ("Log: bad level " + name + " (off, info or debug)");
+        } // switch
+    } // parse
+
+} // Log class
@@ -0,0 +1,40 @@
+
+/*******************************************************************************
+ * @file  LruCache.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class is a map holding at most a given number of entries, evicting the
+ * least recently used entry when full.  It is not thread-safe.
+ * @param <K>  the key type
+ * @param <V>  the value type
+ */
+class LruCache <K, V>
+      extends LinkedHashMap <K, V>
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Maximum number of entries.
+     */
+    private final int capacity;
+
+    /***************************************************************************
+     * Construct an empty cache.
+     * @param _capacity  the maximum number of entries
+     */
+    LruCache (int _capacity)
+    {
+        super (16, 0.75f, true);                          // access order
+        capacity = _capacity;
+    } // constructor
+
+    protected boolean removeEldestEntry (Map.Entry <K, V> eldest)
+    {
+        return size () > capacity;
+    } // removeEldestEntry
+
+} // LruCache class
@@ -0,0 +1,261 @@
+
+/*******************************************************************************
+ * @file  Metrics.java
+ */
+
+package database1;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/*******************************************************************************
+ * This class keeps the counters of a table or of a kind of operator: calls,
+ * rows in and out, records and bytes read and written, index lookups and a
+ * latency histogram.  Each base table has its own metrics (temporary result
+ * tables share one set), and each operator kind (select, join, insert, ...)
+ * has one across all tables.  They are registered as JMX MBeans named
+ * database1:type=Table,name=<table> and database1:type=Operator,name=<op>
+ * (unless -Ddatabase1.jmx=false).  Counting is cheap enough to be always on.
+ */
+public class Metrics
+       implements MetricsMBean
+{
+    /** Whether metrics are registered with the platform MBean server.
+     */
+    private static final boolean JMX = ! "false".equals (System.getProperty ("database1.jmx"));
+
+    /** Metrics of each kind of operator, by name.
+     */
+    private static final Map <String, Metrics> operators = new ConcurrentHashMap <> ();
+
+    /** Metrics shared by all temporary (result) tables.
+     */
+    private static final Metrics temporary = new Metrics ("Table", "(temporary)");
+
+    /** The tally of the current thread, while it runs an EXPLAIN ANALYZE.
+     */
+    private static final ThreadLocal <Tally> tally = new ThreadLocal <> ();
+
+    /** Number of tallies in progress (so read and lookup skip the thread local
+     *  when there are none).
+     */
+    private static volatile int tallying;
+
+    /** The JMX name (null if not registered).
+     */
+    private ObjectName objectName;
+
+    /** The name of the table or operator.
+     */
+    private final String name;
+
+    /** The counters.
+     */
+    private final LongAdder calls = new LongAdder (), rowsIn = new LongAdder (), rowsOut = new LongAdder (),
+                            recordsRead = new LongAdder (), recordsWritten = new LongAdder (),
+                            bytesRead = new LongAdder (), bytesWritten = new LongAdder (),
+                            indexLookups = new LongAdder ();
+
+    /** The latencies of the calls.
+     */
+    private final Histogram latency = new Histogram ();
+
+    /***************************************************************************
+     * Construct and register metrics.
+     * @param type   the JMX type (Table or Operator)
+     * @param _name  the name of the table or operator
+     */
+    private Metrics (String type, String _name)
+    {
+        name = _name;
+        if (! JMX) return;
+        try {
+            objectName = new ObjectName ("database1:type=" + type + ",name=" + ObjectName.quote (name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+            if (server.isRegistered (objectName)) server.unregisterMBean (objectName);   // a newer table of that name
+            server.registerMBean (this, objectName);
+        } catch (JMException ex) {
+            throw new IllegalStateException ("Metrics: unable to register " + name, ex);
+        } // try
+    } // constructor
+
+    /***************************************************************************
+     * Return new metrics for a table (or the shared ones for temporary tables).
+     * @param table        the name of the table
+     * @param isTemporary  whether the table is a temporary (result) table
+     * @return  the metrics
+     */
+    static Metrics forTable (String table, boolean isTemporary)
+    {
+        return isTemporary ? temporary : new Metrics ("Table", table);
+    } // forTable
+
+    /***************************************************************************
+     * Return the metrics of a kind of operator.
+     * @param op  the name of the operator, e.g., "select"
+     * @return  the metrics
+     */
+    static Metrics forOperator (String op)
+    {
+        Metrics m = operators.get (op);
+        return m != null ? m : operators.computeIfAbsent (op, k -> new Metrics ("Operator", k));
+    } // forOperator
+
+    /***************************************************************************
+     * Return the metrics of all the operators used so far.
+     * @return  the operator metrics, by name
+     */
+    public static Map <String, Metrics> operators ()
+    {
+        return new TreeMap <> (operators);
+    } // operators
+
+    /***************************************************************************
+     * Unregister the metrics from JMX (e.g., when their table is closed).
+     */
+    void unregister ()
+    {
+        if (objectName == null || this == temporary) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+            if (server.isRegistered (objectName)) server.unregisterMBean (objectName);
+        } catch (JMException ex) {
+            throw new IllegalStateException ("Metrics: unable to unregister " + name, ex);
+        } // try
+        objectName = null;
+    } // unregister
+
+    /***************************************************************************
+     * Record a call.
+     * @param in     the number of rows it read
+     * @param out    the number of rows it produced
+     * @param nanos  its elapsed time
+     */
+    void call (long in, long out, long nanos)
+    {
+        calls.increment ();
+        rowsIn.add (in);
+        rowsOut.add (out);
+        latency.record (nanos);
+    } // call
+
+    /***************************************************************************
+     * Record reading records from storage.
+     * @param records  the number of records
+     * @param bytes    the number of bytes read
+     */
+    void read (int records, long bytes)
+    {
+        recordsRead.add (records);
+        bytesRead.add (bytes);
+        if (tallying > 0) {
+            Tally t = tally.get ();
+            if (t != null) t.records += records;
+        } // if
+    } // read
+
+    /***************************************************************************
+     * Record writing records to storage.
+     * @param records  the number of records
+     * @param bytes    the number of bytes written
+     */
+    void written (int records, long bytes)
+    {
+        recordsWritten.add (records);
+        bytesWritten.add (bytes);
+    } // written
+
+    /***************************************************************************
+     * Record an index lookup.
+     */
+    void lookup ()
+    {
+        indexLookups.increment ();
+        if (tallying > 0) {
+            Tally t = tally.get ();
+            if (t != null) t.lookups++;
+        } // if
+    } // lookup
+
+    /***************************************************************************
+     * Start counting the records read and index lookups made by the current
+     * thread (on any table), until stopTally.
+     * @return  the thread's tally
+     */
+    static synchronized Tally startTally ()
+    {
+        Tally t = new Tally ();
+        tally.set (t);
+        tallying++;
+        return t;
+    } // startTally
+
+    /***************************************************************************
+     * Stop counting for the current thread (see startTally).
+     */
+    static synchronized void stopTally ()
+    {
+        if (tally.get () == null) return;
+        tally.remove ();
+        tallying--;
+    } // stopTally
+
+    /***************************************************************************
+     * The records read and index lookups made by one thread while it runs an
+     * EXPLAIN ANALYZE (see Operator.Analyze); only that thread updates them.
+     */
+    static final class Tally
+    {
+        long records, lookups;
+    } // Tally class
+
+    public String getName ()           { return name; }
+    public long   getCalls ()          { return calls.sum (); }
+    public long   getRowsIn ()         { return rowsIn.sum (); }
+    public long   getRowsOut ()        { return rowsOut.sum (); }
+    public long   getRecordsRead ()    { return recordsRead.sum (); }
+    public long   getRecordsWritten () { return recordsWritten.sum (); }
+    public long   getBytesRead ()      { return bytesRead.sum (); }
+    public long   getBytesWritten ()   { return bytesWritten.sum (); }
+    public long   getIndexLookups ()   { return indexLookups.sum (); }
+    public double getLatencyMean ()    { return latency.mean () / 1e3; }
+    public double getLatencyP50 ()     { return latency.percentile (0.5) / 1e3; }
+    public double getLatencyP99 ()     { return latency.percentile (0.99) / 1e3; }
+    public double getLatencyP999 ()    { return latency.percentile (0.999) / 1e3; }
+    public double getLatencyMax ()     { return latency.max () / 1e3; }
+
+    /***************************************************************************
+     * Return the latency histogram.
+     * @return  the histogram of call latencies
+     */
+    public Histogram latency ()
+    {
+        return latency;
+    } // latency
+
+    /***************************************************************************
+     * Reset all the counters.
+     */
+    public void reset ()
+    {
+        for (LongAdder c : new LongAdder [] { calls, rowsIn, rowsOut, recordsRead, recordsWritten,
+                                              bytesRead, bytesWritten, indexLookups }) c.reset ();
+        latency.reset ();
+    } // reset
+
+    /***************************************************************************
+     * Return a one-line summary of the metrics.
+     * @return  the counters and latency distribution
+     */
+    public String toString ()
+    {
+        return name + ": calls = " + getCalls () + ", rows in/out = " + getRowsIn () + "/" + getRowsOut () +
+               ", records read/written = " + getRecordsRead () + "/" + getRecordsWritten () +
+               ", bytes read/written = " + getBytesRead () + "/" + getBytesWritten () +
+               ", index lookups = " + getIndexLookups () + ", latency: " + latency;
+    } // toString
+
+} // Metrics class
@@ -0,0 +1,31 @@
+
+/*******************************************************************************
+ * @file  MetricsMBean.java
+ */
+
+package database1;
+
+/*******************************************************************************
+ * The management interface of Metrics, as seen through JMX (e.g., in jconsole
+ * under database1/Table and database1/Operator).  Latencies are in
+ * microseconds.
+ */
+public interface MetricsMBean
+{
+    String getName ();
+    long   getCalls ();
+    long   getRowsIn ();
+    long   getRowsOut ();
+    long   getRecordsRead ();
+    long   getRecordsWritten ();
+    long   getBytesRead ();
+    long   getBytesWritten ();
+    long   getIndexLookups ();
+    double getLatencyMean ();
+    double getLatencyP50 ();
+    double getLatencyP99 ();
+    double getLatencyP999 ();
+    double getLatencyMax ();
+    void   reset ();
+
+} // MetricsMBean interface
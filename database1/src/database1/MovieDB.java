@@ -126,6 +126,58 @@ class MovieDB
         Table t_join2 = movieStar.join ("name == starName", starsIn);
         t_join2.print();
         
+        Table t_pipe = movie.scan ().select ("year > 1979").project ("title genre").materialize ();
+        t_pipe.print();
+        
+        Table t_pipe2 = movie.scan ().join ("studioName == name", studio.scan ())
+                             .select ("genre == 'action'").project ("title address").materialize ();
+        t_pipe2.print();
+        
+        Table t_order = movie.orderBy ("year length", true);
+        t_order.print();
+        
+        Table t_group = movie.groupBy ("studioName", "count(*) sum(length) avg(length) min(year)");
+        t_group.print();
+        
+        out.println ("\n movie statistics: " + movie.analyze ());
+        out.println (" selectivity (year > 1979) ~ " + movie.getStats ().selectivity ("year", ">", 1979));
+        
+        Plan plan = Plan.scan (movie).join ("studioName == name", Plan.scan (studio))
+                        .select ("genre == 'action' & presNo > 8000").project ("title address");
+        out.println ("\n logical plan:\n" + plan + "\n optimized plan:\n" + plan.optimize ());
+        Table t_plan = plan.optimize ().execute ();
+        t_plan.print();
+        
+        Plan plan2 = JoinOptimizer.optimize (new Table [] { movieStar, starsIn, movie, studio },
+                                             "movieStar.name == starName", "movieTitle == title",
+                                             "studioName == studio.name");
+        out.println ("\n join order:\n" + plan2);
+        Table t_plan2 = plan2.project ("starName title year address").execute ();
+        t_plan2.print();
+        
+        PreparedSelect ps = movie.prepare ("genre == ? & year > ?");
+        Table t_prep = ps.execute ("action", 1980);
+        t_prep.print();
+        Table t_prep2 = ps.set (1, "sciFi").set (2, 1970).execute ();
+        t_prep2.print();
+        
+        ResultCache.setBudget (1 << 20);
+        movie.join ("studioName == name", studio);                  // computed and cached
+        movie.join ("studioName == name", studio);                  // reused
+        movie.insert (film4);
+        Table t_cache = movie.join ("studioName == name", studio);  // movie changed: recomputed
+        t_cache.print();
+        out.println ("\n " + ResultCache.summary ());
+        
+        movieStar.addBitmapIndex ("gender");
+        Table t_bitmap = movieStar.select ("gender == M");
+        t_bitmap.print();
+        
+        Plan plan3 = Plan.scan (movie).join ("studioName == name", Plan.scan (studio)).select ("year > 1979")
+                         .project ("title address").optimize ();
+        out.println ("\n explain:\n" + plan3.explain ());
+        out.println (" explain analyze:\n" + plan3.explainAnalyze ());
+        
         
         /*
         out.println ();
@@ -0,0 +1,213 @@
+
+/*******************************************************************************
+ * @file  MovieGenerator.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class generates the tables of the Movie Database (see MovieDB) filled
+ * with synthetic data, deterministically from a seed.  The scale factor sets
+ * the table sizes (at scale 1: 50 studios, 500 executives, 2000 stars, 10000
+ * movies, about 2000 of them showing in cinemas and 3 stars per movie).  The
+ * skew is the exponent of the Zipf distributions from which studios,
+ * producers, genres, cinema movies and cast members are drawn (0 => uniform).
+ * Foreign keys always refer to existing tuples: movie.studioName to
+ * studio.name, movie.producerNo and studio.presNo to movieExec.certNo,
+ * starsIn.(movieTitle, movieYear) to movie and starsIn.starName to
+ * movieStar.name; cinema holds a subset of movie.
+ */
+public class MovieGenerator
+{
+    /** Positions of the tables in the array returned by generate.
+     */
+    public static final int MOVIE = 0, CINEMA = 1, MOVIE_STAR = 2, STARS_IN = 3, MOVIE_EXEC = 4, STUDIO = 5;
+
+    static final String [] GENRES = { "drama", "comedy", "action", "thriller", "sciFi", "romance", "horror",
+                                      "documentary" };
+
+    private static final String [] CITIES = { "Hollywood", "Burbank", "Beverly_Hills", "Brentwood", "Malibu",
+                                              "Santa_Monica", "Culver_City", "Universal_City", "Pasadena" };
+
+    /** Table sizes at scale 1.
+     */
+    private static final int STUDIOS = 50, EXECS = 500, STARS = 2000, MOVIES = 10000, CAST = 3;
+
+    /** Fraction of the movies showing in cinemas.
+     */
+    private static final double CINEMA_FRACTION = 0.2;
+
+    private final long   seed;
+    private final double scale;
+    private final double skew;
+
+    /***************************************************************************
+     * Construct a generator.
+     * @param _seed   the seed of the random numbers (same seed => same data)
+     * @param _scale  the scale factor (> 0)
+     * @param _skew   the Zipf exponent (>= 0, 0 => uniform)
+     */
+    public MovieGenerator (long _seed, double _scale, double _skew)
+    {
+        if (_scale <= 0) throw new IllegalArgumentException ("MovieGenerator: scale must be positive");
+        if (_skew < 0)   throw new IllegalArgumentException ("MovieGenerator: skew must not be negative");
+        seed  = _seed;
+        scale = _scale;
+        skew  = _skew;
+    } // constructor
+
+    /***************************************************************************
+     * Return the number of movies generated (titles are "Movie_0" ... in order).
+     * @return  the number of movies
+     */
+    public int movies ()
+    {
+        return size (MOVIES);
+    } // movies
+
+    /***************************************************************************
+     * Return the number of stars generated (names are "Star_0" ...).
+     * @return  the number of stars
+     */
+    public int stars ()
+    {
+        return size (STARS);
+    } // stars
+
+    /***************************************************************************
+     * Return the number of studios generated (names are "Studio_0" ...).
+     * @return  the number of studios
+     */
+    public int studios ()
+    {
+        return size (STUDIOS);
+    } // studios
+
+    /***************************************************************************
+     * Return the number of executives generated (certNos are 0 ...).
+     * @return  the number of executives
+     */
+    public int execs ()
+    {
+        return size (EXECS);
+    } // execs
+
+    /***************************************************************************
+     * Return the year of movie i, which together with its title forms its key.
+     * @param i  the movie number
+     * @return  the year
+     */
+    public static int year (int i)
+    {
+        return 1920 + (int) ((i * 2654435761L >>> 7) % 100);
+    } // year
+
+    /***************************************************************************
+     * Create and fill the six tables (see MOVIE ... STUDIO for their order).
+     * #usage Table [] db = new MovieGenerator (42, 1.0, 0.8).generate ()
+     * @return  the tables
+     */
+    public Table [] generate ()
+    {
+        Random rand    = new Random (seed);
+        Zipf   studio  = new Zipf (studios (), skew);
+        Zipf   exec    = new Zipf (execs (), skew);
+        Zipf   star    = new Zipf (stars (), skew);
+        Zipf   genre   = new Zipf (GENRES.length, skew);
+        Zipf   showing = new Zipf (movies (), skew);
+
+        Table [] db = new Table [6];
+        db [MOVIE]      = new Table ("movie", "title year length genre studioName producerNo",
+                                     "String Integer Integer String String Integer", "title year");
+        db [CINEMA]     = new Table ("cinema", "title year length genre studioName producerNo",
+                                     "String Integer Integer String String Integer", "title year");
+        db [MOVIE_STAR] = new Table ("movieStar", "name address gender birthdate",
+                                     "String String Character String", "name");
+        db [STARS_IN]   = new Table ("starsIn", "movieTitle movieYear starName",
+                                     "String Integer String", "movieTitle movieYear starName");
+        db [MOVIE_EXEC] = new Table ("movieExec", "certNo name address fee",
+                                     "Integer String String Float", "certNo");
+        db [STUDIO]     = new Table ("studio", "name address presNo",
+                                     "String String Integer", "name");
+
+        for (int i = 0; i < execs (); i++) {
+            db [MOVIE_EXEC].insert (new Comparable [] { i, "Exec_" + i, city (rand),
+                                                        (float) (1000 * (10 + rand.nextInt (990))) });
+        } // for
+        for (int i = 0; i < studios (); i++) {
+            db [STUDIO].insert (new Comparable [] { "Studio_" + i, city (rand), exec.next (rand) });
+        } // for
+        for (int i = 0; i < stars (); i++) {
+            db [MOVIE_STAR].insert (new Comparable [] { "Star_" + i, city (rand), rand.nextBoolean () ? 'F' : 'M',
+                                                        (1 + rand.nextInt (12)) + "/" + (1 + rand.nextInt (28)) + "/" +
+                                                        (1900 + rand.nextInt (100)) });
+        } // for
+
+        Comparable [][] movie = new Comparable [movies ()][];
+        for (int i = 0; i < movie.length; i++) {
+            movie [i] = new Comparable [] { "Movie_" + i, year (i), 60 + rand.nextInt (120), GENRES [genre.next (rand)],
+                                            "Studio_" + studio.next (rand), exec.next (rand) };
+            db [MOVIE].insert (movie [i]);
+            Set <Integer> cast = new TreeSet <> ();
+            int           k    = 1 + rand.nextInt (2 * CAST - 1);
+            for (int tries = 0; cast.size () < k && tries < 20 * k; tries++) cast.add (star.next (rand));
+            for (int s : cast) {
+                db [STARS_IN].insert (new Comparable [] { movie [i] [0], movie [i] [1], "Star_" + s });
+            } // for
+        } // for
+
+        Set <Integer> shown  = new TreeSet <> ();
+        int           target = (int) (CINEMA_FRACTION * movie.length);
+        for (int k = 0; k < 4 * target && shown.size () < target; k++) shown.add (showing.next (rand));
+        for (int i : shown) db [CINEMA].insert (movie [i]);
+        return db;
+    } // generate
+
+    private int size (int base)
+    {
+        return Math.max (1, (int) Math.round (base * scale));
+    } // size
+
+    private static String city (Random rand)
+    {
+        return CITIES [rand.nextInt (CITIES.length)];
+    } // city
+
+    /***************************************************************************
+     * This class draws integers in [0, n) from a Zipf distribution with the
+     * given exponent (P(i) proportional to 1 / (i + 1)^s) by binary search
+     * over its cumulative distribution.
+     */
+    static class Zipf
+    {
+        private final double [] cdf;
+
+        /***********************************************************************
+         * Construct a Zipf distribution.
+         * @param n  the number of values
+         * @param s  the exponent (0 => uniform)
+         */
+        Zipf (int n, double s)
+        {
+            cdf = new double [n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) cdf [i] = sum += 1 / Math.pow (i + 1, s);
+            for (int i = 0; i < n; i++) cdf [i] /= sum;
+        } // constructor
+
+        /***********************************************************************
+         * Draw a value.
+         * @param rand  the source of random numbers
+         * @return  a value in [0, n)
+         */
+        int next (Random rand)
+        {
+            int i = Arrays.binarySearch (cdf, rand.nextDouble ());
+            return Math.min (cdf.length - 1, i >= 0 ? i : -i - 1);
+        } // next
+
+    } // Zipf class
+
+} // MovieGenerator class
@@ -0,0 +1,913 @@
+
+/*******************************************************************************
+ * @file  Operator.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class is the base of pipelined (iterator-model) relational operators.
+ * An operator produces its tuples one at a time through open/next/close, pulling
+ * tuples from its child operator(s) on demand, so a chain such as
+ * movie.scan ().select (...).project (...) never builds the intermediate tables.
+ * Only materialize () creates a Table (a temporary one, see TempList).
+ */
+public abstract class Operator
+{
+    /** Name used for results of this operator.
+     */
+    final String name;
+
+    /** Attribute names of the tuples produced.
+     */
+    final String [] attribute;
+
+    /** Attribute domains of the tuples produced.
+     */
+    final Class [] domain;
+
+    /** Primary key of the tuples produced.
+     */
+    final String [] key;
+
+    /***************************************************************************
+     * Construct an operator producing tuples with the given schema.
+     * @param _name       the name used for results
+     * @param _attribute  the attribute names
+     * @param _domain     the attribute domains
+     * @param _key        the primary key
+     */
+    Operator (String _name, String [] _attribute, Class [] _domain, String [] _key)
+    {
+        name      = _name;
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+    } // constructor
+
+    /***************************************************************************
+     * Prepare the operator (and its children) to produce tuples.
+     */
+    public abstract void open ();
+
+    /***************************************************************************
+     * Return the next tuple, or null when the operator is exhausted.
+     * @return  the next tuple
+     */
+    public abstract Comparable [] next ();
+
+    /***************************************************************************
+     * Release the resources held by the operator (and its children).
+     */
+    public abstract void close ();
+
+    /***************************************************************************
+     * Return the child operators (for explaining the operator tree).
+     * @return  the children
+     */
+    Operator [] children ()
+    {
+        return new Operator [0];
+    } // children
+
+    /***************************************************************************
+     * Return a one-line description of the operator and the algorithm it uses.
+     * @return  the description
+     */
+    abstract String label ();
+
+    //---------------------------- Chaining Methods ----------------------------
+
+    /***************************************************************************
+     * Chain a selection onto this operator.
+     * @param condition  the check condition for tuples
+     * @return  the select operator
+     */
+    public Operator select (String condition)
+    {
+        return new Select (this, condition);
+    } // select
+
+    /***************************************************************************
+     * Chain a projection onto this operator.
+     * @param attributeList  the attributes to project onto
+     * @return  the project operator
+     */
+    public Operator project (String attributeList)
+    {
+        String [] pAttribute = attributeList.split (" ");
+        Operator  proj       = new Project (this, pAttribute);
+        return Project.keepsKey (key, pAttribute) ? proj : new Distinct (proj);
+    } // project
+
+    /***************************************************************************
+     * Chain duplicate elimination onto this operator.
+     * @return  the distinct operator
+     */
+    public Operator distinct ()
+    {
+        return new Distinct (this);
+    } // distinct
+
+    /***************************************************************************
+     * Chain a union with op2 onto this operator.
+     * @param op2  the rhs operator
+     * @return  the union operator
+     */
+    public Operator union (Operator op2)
+    {
+        return new Union (this, op2);
+    } // union
+
+    /***************************************************************************
+     * Chain a difference with op2 onto this operator.
+     * @param op2  the rhs operator
+     * @return  the minus operator
+     */
+    public Operator minus (Operator op2)
+    {
+        return new Minus (this, op2);
+    } // minus
+
+    /***************************************************************************
+     * Chain a join with op2 onto this operator.
+     * @param condition  the join condition for tuples
+     * @param op2        the rhs operator
+     * @return  the join operator
+     */
+    public Operator join (String condition, Operator op2)
+    {
+        return new Join (this, condition, op2, null);
+    } // join
+
+    /***************************************************************************
+     * Chain a join with op2 onto this operator, using the given join method.
+     * @param condition  the join condition for tuples
+     * @param op2        the rhs operator
+     * @param method     the join method (null for the default)
+     * @return  the join operator
+     */
+    public Operator join (String condition, Operator op2, JoinMethod method)
+    {
+        return new Join (this, condition, op2, method);
+    } // join
+
+    /***************************************************************************
+     * Run the pipeline and store its result in a new table.
+     * @return  the table holding the result
+     */
+    public Table materialize ()
+    {
+        return materialize (Table.tempName (name));
+    } // materialize
+
+    /***************************************************************************
+     * Run the pipeline and store its result in a new table with the given name.
+     * @param tableName  the name of the result table
+     * @return  the table holding the result
+     */
+    public Table materialize (String tableName)
+    {
+        Table result = new Table (tableName, attribute, domain, key, true);
+        open ();
+        try {
+            for (Comparable [] tup = next (); tup != null; tup = next ()) result.append (tup);
+        } finally {
+            close ();
+        } // try
+        return result;
+    } // materialize
+
+    //----------------------------- Operator Classes ---------------------------
+
+    /***************************************************************************
+     * Scan the tuples of a stored table (in key order, unless the table holds
+     * a sorted result, see Table.orderBy).
+     */
+    static class Scan
+           extends Operator
+    {
+        final Table                              table;
+        final boolean                            keyOrder;     // whether the tuples come in key order
+        private final Collection <Comparable []> source;
+        private Iterator <Comparable []> it;
+
+        Scan (Table _table, String [] _attribute, Class [] _domain, String [] _key,
+              Collection <Comparable []> _source, boolean _keyOrder)
+        {
+            super (_table.getName (), _attribute, _domain, _key);
+            table    = _table;
+            source   = _source;
+            keyOrder = _keyOrder;
+        } // constructor
+
+        public void open ()               { it = source.iterator (); }
+        public Comparable [] next ()      { return it.hasNext () ? it.next () : null; }
+        public void close ()              { it = null; }
+        String label ()                   { return "Scan " + name + (keyOrder ? " (index order)" : " (sort order)"); }
+
+        /***********************************************************************
+         * Chain a selection onto the scan, run on column batches in vectorized
+         * mode when the condition allows it (see VectorSelect).
+         * @param condition  the check condition for tuples
+         * @return  the select operator
+         */
+        public Operator select (String condition)
+        {
+            Condition c = Condition.compile (condition, attribute, domain);
+            if (! Table.vectorized () || table.batchSource () == null || ! c.vectorizable (domain)) {
+                return new Select (this, condition);
+            } // if
+            return new VectorSelect (this, condition, c, attribute);
+        } // select
+
+    } // Scan class
+
+    /***************************************************************************
+     * Scan a stored table in column batches (see ColumnBatch), checking the
+     * condition a column at a time with primitive loops, and pass on the
+     * matching tuples, in storage (not key) order.  A projection chained onto
+     * it is folded in, so only the projected columns of matching records are
+     * ever unpacked.  Used for a selection on a scan in vectorized mode.
+     */
+    static class VectorSelect
+           extends Operator
+    {
+        private final Scan      scan;          // the scan replaced (its schema is that of the table)
+        private final String    condition;
+        private final Condition cond;
+        private final int []    colPos;        // the columns of the table passed on
+        private ColumnBatch     batch;
+        private int             from;          // slot of the current batch
+        private int             pos;           // next selected row of the batch
+
+        VectorSelect (Scan _scan, String _condition, Condition _cond, String [] pAttribute)
+        {
+            super (_scan.name, pAttribute, Project.extractDom (_scan, pAttribute),
+                   Project.keepsKey (_scan.key, pAttribute) ? _scan.key : pAttribute);
+            scan      = _scan;
+            condition = _condition;
+            cond      = _cond;
+            colPos    = positions (pAttribute, scan.attribute);
+        } // constructor
+
+        public void close ()              { batch = null; }
+
+        String label ()
+        {
+            return "VectorFilter " + name + " [" + condition + "]"
+                   + (attribute == scan.attribute ? "" : " -> [" + String.join (" ", attribute) + "]")
+                   + " (column batches of " + ColumnBatch.CAPACITY + ")";
+        } // label
+
+        public void open ()
+        {
+            batch = new ColumnBatch (scan.domain);
+            from  = pos = 0;
+            load ();
+        } // open
+
+        public Comparable [] next ()
+        {
+            while (pos == batch.size ()) {
+                from += ColumnBatch.CAPACITY;
+                pos   = 0;
+                if (! load ()) return null;
+            } // while
+            int           r   = batch.row (pos++);
+            Comparable [] tup = new Comparable [colPos.length];
+            for (int j = 0; j < tup.length; j++) tup [j] = batch.value (r, colPos [j]);
+            return tup;
+        } // next
+
+        /***********************************************************************
+         * Chain a projection onto the selection, folding it in.
+         * @param attributeList  the attributes to project onto
+         * @return  the (projecting) vector select operator
+         */
+        public Operator project (String attributeList)
+        {
+            String [] pAttribute = attributeList.split (" ");
+            Operator  proj       = new VectorSelect (scan, condition, cond, pAttribute);
+            return Project.keepsKey (key, pAttribute) ? proj : new Distinct (proj);
+        } // project
+
+        /***********************************************************************
+         * Load the batch at slot from and filter it.
+         * @return  whether any record was loaded
+         */
+        private boolean load ()
+        {
+            FileList list = scan.table.batchSource ();
+            if (list == null) {
+                throw new IllegalStateException ("VectorSelect: " + name + " no longer holds only current records");
+            } // if
+            if (batch.load (list, from) == 0) return false;
+            cond.filter (batch, scan.domain, null);
+            return true;
+        } // load
+
+    } // VectorSelect class
+
+    /***************************************************************************
+     * Pass on the tuples of the child that satisfy a condition.
+     */
+    static class Select
+           extends Operator
+    {
+        private final Operator  child;
+        private final String    condition;
+        private final Condition cond;
+
+        Select (Operator _child, String _condition)
+        {
+            super (_child.name, _child.attribute, _child.domain, _child.key);
+            child     = _child;
+            condition = _condition;
+            cond      = Condition.compile (condition, attribute, domain);
+        } // constructor
+
+        public void open ()               { child.open (); }
+        public void close ()              { child.close (); }
+        Operator [] children ()           { return new Operator [] { child }; }
+        String label ()                   { return "Filter [" + condition + "] (compiled condition)"; }
+
+        public Comparable [] next ()
+        {
+            for (Comparable [] tup = child.next (); tup != null; tup = child.next ()) {
+                if (cond.eval (tup, null)) return tup;
+            } // for
+            return null;
+        } // next
+
+    } // Select class
+
+    /***************************************************************************
+     * Project the tuples of the child onto the given attributes.  When the key
+     * is not kept, the whole projected tuple becomes the key and the projection
+     * is followed by a Distinct stage (see project).
+     */
+    static class Project
+           extends Operator
+    {
+        private final Operator child;
+        private final int []   colPos;
+
+        Project (Operator _child, String [] pAttribute)
+        {
+            super (_child.name, pAttribute, extractDom (_child, pAttribute),
+                   keepsKey (_child.key, pAttribute) ? _child.key : pAttribute);
+            child  = _child;
+            colPos = positions (pAttribute, child.attribute);
+        } // constructor
+
+        public void open ()               { child.open (); }
+        public void close ()              { child.close (); }
+        Operator [] children ()           { return new Operator [] { child }; }
+        String label ()                   { return "Project [" + String.join (" ", attribute) + "]"; }
+
+        public Comparable [] next ()
+        {
+            Comparable [] tup = child.next ();
+            if (tup == null) return null;
+            Comparable [] pTup = new Comparable [colPos.length];
+            for (int j = 0; j < colPos.length; j++) pTup [j] = tup [colPos [j]];
+            return pTup;
+        } // next
+
+        private static Class [] extractDom (Operator child, String [] pAttribute)
+        {
+            Class [] dom = new Class [pAttribute.length];
+            for (int j = 0; j < dom.length; j++) dom [j] = child.domain [Table.columnPos (pAttribute [j], child.attribute)];
+            return dom;
+        } // extractDom
+
+        static boolean keepsKey (String [] key, String [] pAttribute)
+        {
+            return Arrays.asList (pAttribute).containsAll (Arrays.asList (key));
+        } // keepsKey
+
+    } // Project class
+
+    /***************************************************************************
+     * Pass on the tuples of the child, dropping any tuple equal to an earlier
+     * one.  The tuples seen so far are kept in a TupleSet.
+     */
+    static class Distinct
+           extends Operator
+    {
+        private final Operator child;
+        private TupleSet       seen;
+
+        Distinct (Operator _child)
+        {
+            super (_child.name, _child.attribute, _child.domain, _child.key);
+            child = _child;
+        } // constructor
+
+        Operator [] children ()           { return new Operator [] { child }; }
+        String label ()                   { return "Distinct (hash set of tuples)"; }
+
+        public void open ()
+        {
+            seen = new TupleSet (16);
+            child.open ();
+        } // open
+
+        public void close ()
+        {
+            seen = null;
+            child.close ();
+        } // close
+
+        public Comparable [] next ()
+        {
+            for (Comparable [] tup = child.next (); tup != null; tup = child.next ()) {
+                if (seen.add (tup)) return tup;
+            } // for
+            return null;
+        } // next
+
+    } // Distinct class
+
+    /***************************************************************************
+     * Produce the tuples of the left child followed by those tuples of the right
+     * child whose key did not appear on the left.
+     */
+    static class Union
+           extends Operator
+    {
+        private final Operator left;
+        private final Operator right;
+        private final int []   keyPos;
+        private TupleSet       seen;
+        private boolean        onRight;
+        private boolean        done;             // closed, or left exhausted and right incompatible
+
+        Union (Operator _left, Operator _right)
+        {
+            super (_left.name, _left.attribute, _left.domain, _left.key);
+            left   = _left;
+            right  = _right;
+            keyPos = positions (key, attribute);
+        } // constructor
+
+        Operator [] children ()           { return new Operator [] { left, right }; }
+        String label ()                   { return "Union (hash set of left keys)"; }
+
+        public void open ()
+        {
+            seen    = new TupleSet (16);
+            onRight = done = false;
+            left.open ();
+        } // open
+
+        public void close ()
+        {
+            seen = null;
+            if (onRight) right.close (); else if (! done) left.close ();
+            onRight = false;
+            done    = true;
+        } // close
+
+        public Comparable [] next ()
+        {
+            if (done) return null;
+            if (! onRight) {
+                Comparable [] tup = left.next ();
+                if (tup != null) {
+                    seen.add (keyVal (tup, keyPos));
+                    return tup;
+                } // if
+                left.close ();
+                if (! compatible (left, right)) { done = true; return null; }
+                right.open ();
+                onRight = true;
+            } // if
+            for (Comparable [] tup = right.next (); tup != null; tup = right.next ()) {
+                if (seen.add (keyVal (tup, keyPos))) return tup;
+            } // for
+            return null;
+        } // next
+
+    } // Union class
+
+    /***************************************************************************
+     * Produce the tuples of the left child that do not appear in the right child.
+     * The right child is consumed into a TupleSet when the operator is opened.
+     */
+    static class Minus
+           extends Operator
+    {
+        private final Operator left;
+        private final Operator right;
+        private TupleSet       rightTuples;
+
+        Minus (Operator _left, Operator _right)
+        {
+            super (_left.name, _left.attribute, _left.domain, _left.key);
+            left  = _left;
+            right = _right;
+        } // constructor
+
+        Operator [] children ()           { return new Operator [] { left, right }; }
+        String label ()                   { return "Minus (hash set of right tuples)"; }
+
+        public void open ()
+        {
+            rightTuples = new TupleSet (16);
+            right.open ();
+            for (Comparable [] tup = right.next (); tup != null; tup = right.next ()) rightTuples.add (tup);
+            right.close ();
+            left.open ();
+        } // open
+
+        public void close ()
+        {
+            rightTuples = null;
+            left.close ();
+        } // close
+
+        public Comparable [] next ()
+        {
+            for (Comparable [] tup = left.next (); tup != null; tup = left.next ()) {
+                if (! rightTuples.contains (tup)) return tup;
+            } // for
+            return null;
+        } // next
+
+    } // Minus class
+
+    /***************************************************************************
+     * Join the tuples of the left child with those of the right child, using
+     * one of the join methods (see JoinMethod).  A single-attribute equi-join
+     * defaults to HASH and any other condition to NESTED_LOOP; INDEX and MERGE
+     * are used only when asked for and when their preconditions hold (see
+     * JoinMethod), falling back to HASH otherwise.  As with Table.join, a right
+     * attribute whose name clashes with a left one is prefixed with the first
+     * letter of the right operator's name (e.g., "s_name").
+     */
+    static class Join
+           extends Operator
+    {
+        private final Operator   left;
+        private final Operator   right;
+        private final Table      rTable;         // the table scanned on the right (null if none)
+        private final String     condition;
+        private final String []  postfix;
+        private final int        lCol;
+        private final int        rCol;
+        final JoinMethod         method;
+        private Map <Comparable, List <Comparable []>> hashTable;
+        private List <Comparable []> rightTuples;
+        private Comparable []        lTup;
+        private List <Comparable []> matches;
+        private int                  pos;
+        private Comparable []        rPeek;          // MERGE: next unconsumed right tuple
+        private Comparable           groupVal;       // MERGE: join value of the current group
+
+        Join (Operator _left, String condition, Operator _right, JoinMethod _method)
+        {
+            this (_left, condition, _right, joinAttributes (_left.attribute, _right.attribute, _right.name),
+                  Table.infix2postfix (condition), _method);
+        } // constructor
+
+        private Join (Operator _left, String _condition, Operator _right, String [] rAttribute, String [] _postfix,
+                      JoinMethod _method)
+        {
+            super (_left.name, rAttribute, concat (_left.domain, _right.domain),
+                   joinKey (_left.attribute, _left.key, _right.attribute, _right.key, rAttribute, fix (_postfix)));
+            left      = _left;
+            right     = _right;
+            condition = _condition;
+            postfix   = _postfix;
+            Operator rOp = right instanceof Analyze ? ((Analyze) right).op : right;
+            rTable       = rOp instanceof Scan ? ((Scan) rOp).table : null;
+
+            int nl = left.attribute.length;
+            int l  = Table.columnPos (postfix [0], attribute);
+            int r  = postfix.length == 3 ? Table.columnPos (postfix [1], attribute) : -1;
+            if (postfix.length == 3 && postfix [2].equals ("==") && l != -1 && r != -1 &&
+                (l < nl) != (r < nl)) {
+                lCol = Math.min (l, r);
+                rCol = Math.max (l, r) - nl;
+            } else {
+                lCol = rCol = -1;
+            } // if
+
+            if (lCol == -1) {
+                method = JoinMethod.NESTED_LOOP;
+            } else if (_method == JoinMethod.INDEX && ! indexable ()) {
+                method = JoinMethod.HASH;
+            } else if (_method == JoinMethod.MERGE && ! (sortedOn (left, left.attribute [lCol]) &&
+                                                         sortedOn (right, right.attribute [rCol]))) {
+                method = JoinMethod.HASH;
+            } else {
+                method = _method == null ? JoinMethod.HASH : _method;
+            } // if
+        } // constructor
+
+        /***********************************************************************
+         * Determine whether the right child is a scan of a table keyed on the
+         * (single) right join attribute, so its index can be probed.
+         */
+        private boolean indexable ()
+        {
+            return rTable != null && right.key.length == 1 && right.key [0].equals (right.attribute [rCol]);
+        } // indexable
+
+        /***********************************************************************
+         * Determine whether an input comes sorted on the given attribute (as
+         * MERGE needs): it is a key order scan of a table keyed on that
+         * attribute alone, possibly under selections, projections and
+         * duplicate elimination, which keep the order.  A vectorized selection
+         * (storage order) or a scan of a sorted result does not qualify.
+         * @param op    the input operator
+         * @param attr  its join attribute
+         * @return  whether the input is sorted on attr
+         */
+        private static boolean sortedOn (Operator op, String attr)
+        {
+            for (;;) {
+                if      (op instanceof Analyze)  op = ((Analyze) op).op;
+                else if (op instanceof Select)   op = ((Select) op).child;
+                else if (op instanceof Project)  op = ((Project) op).child;
+                else if (op instanceof Distinct) op = ((Distinct) op).child;
+                else break;
+            } // for
+            return op instanceof Scan && ((Scan) op).keyOrder && op.key.length == 1 && op.key [0].equals (attr);
+        } // sortedOn
+
+        Operator [] children ()           { return new Operator [] { left, right }; }
+
+        String label ()
+        {
+            switch (method) {
+            case HASH:        return "Join [" + condition + "] HASH (build on right)";
+            case INDEX:       return "Join [" + condition + "] INDEX (probe right index)";
+            case MERGE:       return "Join [" + condition + "] MERGE (both sorted on keys)";
+            default:          return "Join [" + condition + "] NESTED_LOOP";
+            } // switch
+        } // label
+
+        public void open ()
+        {
+            switch (method) {
+            case HASH:
+                hashTable = new HashMap <> ();
+                right.open ();
+                for (Comparable [] tup = right.next (); tup != null; tup = right.next ()) {
+                    List <Comparable []> bucket = hashTable.get (tup [rCol]);
+                    if (bucket == null) hashTable.put (tup [rCol], bucket = new ArrayList <> (1));
+                    bucket.add (tup);
+                } // for
+                right.close ();
+                break;
+            case NESTED_LOOP:
+                rightTuples = new ArrayList <> ();
+                right.open ();
+                for (Comparable [] tup = right.next (); tup != null; tup = right.next ()) rightTuples.add (tup);
+                right.close ();
+                break;
+            case MERGE:
+                right.open ();
+                rPeek    = right.next ();
+                groupVal = null;
+                break;
+            case INDEX:
+                break;                                     // the right child is probed, not scanned
+            } // switch
+            left.open ();
+            lTup    = null;
+            matches = null;
+        } // open
+
+        public void close ()
+        {
+            if (method == JoinMethod.MERGE) right.close ();
+            hashTable   = null;
+            rightTuples = null;
+            rPeek       = null;
+            left.close ();
+        } // close
+
+        public Comparable [] next ()
+        {
+            for ( ; ; ) {
+                while (matches != null && pos < matches.size ()) {
+                    Comparable [] tup = concatTup (lTup, matches.get (pos++));
+                    if (method != JoinMethod.NESTED_LOOP || Table.evalTup (postfix, tup, attribute, domain)) return tup;
+                } // while
+                if ((lTup = left.next ()) == null) return null;
+                pos = 0;
+                switch (method) {
+                case HASH:        matches = hashTable.get (lTup [lCol]); break;
+                case NESTED_LOOP: matches = rightTuples;                 break;
+                case INDEX:       matches = probe (lTup [lCol]);         break;
+                case MERGE:       matches = mergeGroup (lTup [lCol]);    break;
+                } // switch
+            } // for
+        } // next
+
+        /***********************************************************************
+         * Look up the right tuple with the given key in the right table's index.
+         */
+        private List <Comparable []> probe (Comparable value)
+        {
+            if (! rTable.mayContain (rCol, value)) return null;         // definite miss
+            Comparable [] tup = rTable.lookup (KeyType.of (new Comparable [] { value }));
+            return tup == null ? null : Collections.singletonList (tup);
+        } // probe
+
+        /***********************************************************************
+         * Advance the (sorted) right input to the group of tuples whose join
+         * value equals the (sorted) left value, reusing the current group when
+         * consecutive left tuples share a value.
+         */
+        @SuppressWarnings("unchecked")
+        private List <Comparable []> mergeGroup (Comparable value)
+        {
+            if (groupVal != null && value.compareTo (groupVal) == 0) return matches;
+            while (rPeek != null && rPeek [rCol].compareTo (value) < 0) rPeek = right.next ();
+            List <Comparable []> group = new ArrayList <> (1);
+            while (rPeek != null && rPeek [rCol].compareTo (value) == 0) {
+                group.add (rPeek);
+                rPeek = right.next ();
+            } // while
+            groupVal = value;
+            return group;
+        } // mergeGroup
+
+        /***********************************************************************
+         * Return the attributes of the join of inputs with the given attributes,
+         * renaming each right attribute that clashes with a left one.
+         * @param lAttr  the attributes of the left input
+         * @param rAttr  the attributes of the right input
+         * @param rName  the name of the right input
+         * @return  the attributes of the join
+         */
+        static String [] joinAttributes (String [] lAttr, String [] rAttr, String rName)
+        {
+            String [] rAttribute = concat (lAttr, rAttr);
+            for (int j = lAttr.length; j < rAttribute.length; j++) {
+                if (Table.columnPos (rAttribute [j], lAttr) != -1) {
+                    rAttribute [j] = rName.charAt (0) + "_" + rAttribute [j];
+                } // if
+            } // for
+            return rAttribute;
+        } // joinAttributes
+
+        static String [] fix (String [] postfix)
+        {
+            for (int i = 0; i < postfix.length; i++) postfix [i] = postfix [i].replace ('.', '_');
+            return postfix;
+        } // fix
+
+        /***********************************************************************
+         * Return the key of the join: the left key if the condition equates the
+         * right key with a left attribute, the (renamed) right key if it does so
+         * for the left key, and both keys otherwise.
+         * @param lAttr       the attributes of the left input
+         * @param lKey        the key of the left input
+         * @param rAttr       the attributes of the right input
+         * @param rKey        the key of the right input
+         * @param rAttribute  the attributes of the join (see joinAttributes)
+         * @param postfix     the join condition in postfix (see fix)
+         * @return  the key of the join
+         */
+        static String [] joinKey (String [] lAttr, String [] lKey, String [] rAttr, String [] rKey,
+                                  String [] rAttribute, String [] postfix)
+        {
+            String [] jKey = new String [rKey.length];
+            for (int j = 0; j < jKey.length; j++) {
+                jKey [j] = rAttribute [lAttr.length + Table.columnPos (rKey [j], rAttr)];
+            } // for
+            if (Arrays.asList (jKey).contains (postfix [1])) return lKey;
+            if (Arrays.asList (lKey).contains (postfix [0])) return jKey;
+            return concat (lKey, jKey);
+        } // joinKey
+
+    } // Join class
+
+    /***************************************************************************
+     * Measure another operator (for Plan.explainAnalyze): count the tuples it
+     * produces, the time spent in it (including its children) and the records
+     * read from FileLists and the index lookups made meanwhile by the current
+     * thread (from its Metrics.Tally, so other queries are not counted).
+     */
+    static class Analyze
+           extends Operator
+    {
+        final Operator              op;
+        private final Metrics.Tally tally;
+        long                        rows, nanos, records, lookups;
+        boolean                     opened;
+
+        Analyze (Operator _op, Metrics.Tally _tally)
+        {
+            super (_op.name, _op.attribute, _op.domain, _op.key);
+            op    = _op;
+            tally = _tally;
+        } // constructor
+
+        public void open ()
+        {
+            long t = System.nanoTime (), r = tally.records, l = tally.lookups;
+            op.open ();
+            opened = true;
+            account (t, r, l);
+        } // open
+
+        public Comparable [] next ()
+        {
+            long t = System.nanoTime (), r = tally.records, l = tally.lookups;
+            Comparable [] tup = op.next ();
+            account (t, r, l);
+            if (tup != null) rows++;
+            return tup;
+        } // next
+
+        public void close ()
+        {
+            long t = System.nanoTime (), r = tally.records, l = tally.lookups;
+            op.close ();
+            account (t, r, l);
+        } // close
+
+        Operator [] children ()           { return op.children (); }
+        String label ()                   { return op.label (); }
+
+        private void account (long t, long r, long l)
+        {
+            nanos   += System.nanoTime () - t;
+            records += tally.records - r;
+            lookups += tally.lookups - l;
+        } // account
+
+    } // Analyze class
+
+    //---------------------------- Helper Methods ------------------------------
+
+    /***************************************************************************
+     * Determine whether two operators produce union-compatible tuples.
+     * @param a  the first operator
+     * @param b  the second operator
+     * @return  whether the attribute names agree
+     */
+    static boolean compatible (Operator a, Operator b)
+    {
+        return Arrays.equals (a.attribute, b.attribute);
+    } // compatible
+
+    /***************************************************************************
+     * Return the positions of the given attributes.
+     * @param names  the attribute names to find
+     * @param attr   the attribute names to search
+     * @return  the column positions
+     */
+    static int [] positions (String [] names, String [] attr)
+    {
+        int [] pos = new int [names.length];
+        for (int j = 0; j < pos.length; j++) pos [j] = Table.columnPos (names [j], attr);
+        return pos;
+    } // positions
+
+    /***************************************************************************
+     * Extract the key values of a tuple.
+     * @param tup     the tuple
+     * @param keyPos  the column positions of the key attributes
+     * @return  the key values
+     */
+    static Comparable [] keyVal (Comparable [] tup, int [] keyPos)
+    {
+        Comparable [] keyVal = new Comparable [keyPos.length];
+        for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [keyPos [j]];
+        return keyVal;
+    } // keyVal
+
+    /***************************************************************************
+     * Concatenate two arrays.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T [] concat (T [] a, T [] b)
+    {
+        T [] c = Arrays.copyOf (a, a.length + b.length);
+        System.arraycopy (b, 0, c, a.length, b.length);
+        return c;
+    } // concat
+
+    /***************************************************************************
+     * Concatenate two tuples.
+     */
+    private static Comparable [] concatTup (Comparable [] a, Comparable [] b)
+    {
+        Comparable [] c = new Comparable [a.length + b.length];
+        System.arraycopy (a, 0, c, 0, a.length);
+        System.arraycopy (b, 0, c, a.length, b.length);
+        return c;
+    } // concatTup
+
+} // Operator class
+
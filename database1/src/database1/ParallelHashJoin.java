@@ -0,0 +1,264 @@
+
+/*******************************************************************************
+ * @file  ParallelHashJoin.java
+ */
+
+package database1;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/*******************************************************************************
+ * This class implements a radix-partitioned parallel equi-join.  Both inputs are
+ * partitioned on a hash of their join column in parallel: each thread takes a
+ * chunk of an input, counts its tuples per partition and, once the counts give
+ * every chunk its place in each partition, scatters them into one array per
+ * input, where each partition is a contiguous range.  Each partition pair is
+ * then built and probed by its own worker thread, which also forms the result
+ * key of each joined tuple and sorts its output on it.  The sorted runs are
+ * handed back as they are, so the result table can merge them and build its
+ * index bottom-up (see Table.appendRuns).  The number of threads is the number
+ * of cores unless set with -Ddatabase1.joinThreads=<n>.
+ */
+class ParallelHashJoin
+{
+    /** Inputs with fewer tuples than this (combined) are joined on the calling
+     *  thread, since the hand-off would cost more than the join itself.
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    /** Number of worker threads.
+     */
+    private static final int THREADS;
+
+    /** Number of partitions (a power of two, at least the number of threads).
+     */
+    private static final int PARTITIONS;
+
+    /** Shared pool of worker threads (daemon threads, so it never blocks exit).
+     */
+    private static final ExecutorService POOL;
+
+    static {
+        int threads = Integer.getInteger ("database1.joinThreads", Runtime.getRuntime ().availableProcessors ());
+        int p       = 1;
+        while (p < threads) p <<= 1;
+        THREADS    = Math.max (1, threads);
+        PARTITIONS = p;
+        POOL = Executors.newFixedThreadPool (THREADS, new ThreadFactory () {
+            public Thread newThread (Runnable r)
+            {
+                Thread t = new Thread (r, "hash-join");
+                t.setDaemon (true);
+                return t;
+            } // newThread
+        });
+    } // static
+
+    /***************************************************************************
+     * Join the left and right tuples on leftCol == rightCol.  Each result tuple
+     * is the concatenation of a left tuple and a matching right tuple.
+     * @param left      the tuples of the lhs table
+     * @param leftCol   the column position of the join attribute in left
+     * @param right     the tuples of the rhs table
+     * @param rightCol  the column position of the join attribute in right
+     * @param keyCols   the column positions of the result key in a joined tuple
+     * @return  the joined tuples with their keys, as runs sorted on the key
+     */
+    static List <List <Map.Entry <KeyType, Comparable []>>> join (Collection <Comparable []> left, int leftCol,
+                                                                 Collection <Comparable []> right, int rightCol,
+                                                                 int [] keyCols)
+    {
+        Comparable [][] l = left.toArray (new Comparable [0][]), r = right.toArray (new Comparable [0][]);
+        if (l.length + r.length < PARALLEL_THRESHOLD) {
+            return Collections.singletonList (new Worker (l, 0, l.length, leftCol, r, 0, r.length, rightCol, keyCols).call ());
+        } // if
+
+        Partitioned lPart = new Partitioned (l, leftCol), rPart = new Partitioned (r, rightCol);
+        run (lPart.counters (), rPart.counters ());
+        lPart.place ();
+        rPart.place ();
+        run (lPart.scatterers (), rPart.scatterers ());
+
+        List <Worker> workers = new ArrayList <> (PARTITIONS);
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (lPart.start [p] == lPart.start [p + 1] || rPart.start [p] == rPart.start [p + 1]) continue;
+            workers.add (new Worker (lPart.out, lPart.start [p], lPart.start [p + 1], leftCol,
+                                     rPart.out, rPart.start [p], rPart.start [p + 1], rightCol, keyCols));
+        } // for
+        return run (workers);
+    } // join
+
+    /***************************************************************************
+     * Run the tasks on the pool and wait for them all.
+     * @param tasks  the tasks
+     * @return  their results, in task order
+     */
+    @SafeVarargs
+    private static <T> List <T> run (List <? extends Callable <T>>... tasks)
+    {
+        List <Callable <T>> all = new ArrayList <> ();
+        for (List <? extends Callable <T>> t : tasks) all.addAll (t);
+        List <T> results = new ArrayList <> (all.size ());
+        try {
+            for (Future <T> f : POOL.invokeAll (all)) results.add (f.get ());
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IllegalStateException ("ParallelHashJoin.join: worker failed - " + ex, ex);
+        } // try
+        return results;
+    } // run
+
+    /***************************************************************************
+     * Inner class that partitions one input into PARTITIONS contiguous ranges
+     * of an output array, using the low bits of the (scrambled) hash of the
+     * join column.  The input is split into THREADS chunks; counting and
+     * scattering each run a task per chunk, and place () turns the counts into
+     * each chunk's offsets in between.
+     */
+    private static class Partitioned
+    {
+        final Comparable [][] in, out;
+        final int             col;
+        final int []          part;          // partition of each input tuple
+        final int [][]        count;         // per chunk: tuples per partition, then next offsets
+        final int []          start = new int [PARTITIONS + 1];
+
+        Partitioned (Comparable [][] _in, int _col)
+        {
+            in    = _in;
+            out   = new Comparable [in.length][];
+            col   = _col;
+            part  = new int [in.length];
+            count = new int [THREADS][PARTITIONS];
+        } // constructor
+
+        int from (int c) { return (int) ((long) in.length * c / THREADS); }
+
+        List <Callable <Void>> counters ()
+        {
+            List <Callable <Void>> tasks = new ArrayList <> (THREADS);
+            for (int c = 0; c < THREADS; c++) {
+                final int [] n = count [c];
+                final int    lo = from (c), hi = from (c + 1);
+                tasks.add (() -> {
+                    for (int i = lo; i < hi; i++) n [part [i] = hash (in [i][col]) & (PARTITIONS - 1)]++;
+                    return null;
+                });
+            } // for
+            return tasks;
+        } // counters
+
+        void place ()
+        {
+            int next = 0;
+            for (int p = 0; p < PARTITIONS; p++) {
+                start [p] = next;
+                for (int c = 0; c < THREADS; c++) {
+                    int n = count [c][p];
+                    count [c][p] = next;
+                    next += n;
+                } // for
+            } // for
+            start [PARTITIONS] = next;
+        } // place
+
+        List <Callable <Void>> scatterers ()
+        {
+            List <Callable <Void>> tasks = new ArrayList <> (THREADS);
+            for (int c = 0; c < THREADS; c++) {
+                final int [] at = count [c];
+                final int    lo = from (c), hi = from (c + 1);
+                tasks.add (() -> {
+                    for (int i = lo; i < hi; i++) out [at [part [i]]++] = in [i];
+                    return null;
+                });
+            } // for
+            return tasks;
+        } // scatterers
+
+    } // Partitioned class
+
+    /***************************************************************************
+     * Scramble the hash code of a join value so that the low bits used for
+     * partitioning are well distributed (e.g., for small Integer values).
+     * @param value  the join attribute value
+     * @return  the scrambled hash
+     */
+    private static int hash (Comparable value)
+    {
+        int h = value.hashCode () * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    } // hash
+
+    /***************************************************************************
+     * Inner class that builds a hash table on the smaller side of one partition
+     * pair and probes it with the other side.
+     */
+    private static class Worker
+            implements Callable <List <Map.Entry <KeyType, Comparable []>>>
+    {
+        private final Comparable [][] left, right;
+        private final int             lFrom, lTo, leftCol, rFrom, rTo, rightCol;
+        private final int []          keyCols;
+
+        Worker (Comparable [][] _left, int _lFrom, int _lTo, int _leftCol,
+                Comparable [][] _right, int _rFrom, int _rTo, int _rightCol, int [] _keyCols)
+        {
+            left  = _left;  lFrom = _lFrom; lTo = _lTo; leftCol  = _leftCol;
+            right = _right; rFrom = _rFrom; rTo = _rTo; rightCol = _rightCol;
+            keyCols = _keyCols;
+        } // constructor
+
+        /***********************************************************************
+         * Build and probe this partition pair.
+         * @return  the joined tuples with their keys, sorted on the key
+         */
+        public List <Map.Entry <KeyType, Comparable []>> call ()
+        {
+            boolean         buildLeft = lTo - lFrom < rTo - rFrom;
+            Comparable [][] build     = buildLeft ? left : right, probe = buildLeft ? right : left;
+            int             bFrom     = buildLeft ? lFrom : rFrom, bTo = buildLeft ? lTo : rTo;
+            int             pFrom     = buildLeft ? rFrom : lFrom, pTo = buildLeft ? rTo : lTo;
+            int             bCol      = buildLeft ? leftCol : rightCol;
+            int             pCol      = buildLeft ? rightCol : leftCol;
+
+            Map <Comparable, List <Comparable []>> table = new HashMap <> ((bTo - bFrom) * 2);
+            for (int i = bFrom; i < bTo; i++) {
+                Comparable [] tup = build [i];
+                List <Comparable []> bucket = table.get (tup [bCol]);
+                if (bucket == null) table.put (tup [bCol], bucket = new ArrayList <> (1));
+                bucket.add (tup);
+            } // for
+
+            List <Map.Entry <KeyType, Comparable []>> out = new ArrayList <> ();
+            for (int i = pFrom; i < pTo; i++) {
+                Comparable [] tup = probe [i];
+                List <Comparable []> bucket = table.get (tup [pCol]);
+                if (bucket == null) continue;
+                for (Comparable [] match : bucket) {
+                    Comparable [] joined = buildLeft ? concat (match, tup) : concat (tup, match);
+                    out.add (new AbstractMap.SimpleImmutableEntry <> (KeyType.of (Operator.keyVal (joined, keyCols)), joined));
+                } // for
+            } // for
+            out.sort (Map.Entry.comparingByKey ());
+            return out;
+        } // call
+
+    } // Worker class
+
+    /***************************************************************************
+     * Concatenate a left tuple and a right tuple.
+     * @param l  the left tuple
+     * @param r  the right tuple
+     * @return  the joined tuple
+     */
+    private static Comparable [] concat (Comparable [] l, Comparable [] r)
+    {
+        Comparable [] tup = new Comparable [l.length + r.length];
+        System.arraycopy (l, 0, tup, 0, l.length);
+        System.arraycopy (r, 0, tup, l.length, r.length);
+        return tup;
+    } // concat
+
+} // ParallelHashJoin class
+
@@ -0,0 +1,754 @@
+
+/*******************************************************************************
+ * @file  Plan.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class is the base of logical query plans.  A plan is a tree of Scan,
+ * Select, Project, Join, Union and Minus nodes built with the same methods as
+ * the relational algebra operators of Table, e.g.,
+ *   Plan.scan (movie).join ("studioName == name", Plan.scan (studio))
+ *                    .select ("genre == 'action'").project ("title address")
+ * Nothing runs until execute () is called.  optimize () rewrites the tree:
+ * selections are split into conjuncts and pushed as far down as possible (below
+ * projections, into both sides of unions and differences, and to the side of a
+ * join whose attributes they reference), and columns that are not needed above
+ * a join are pruned from its inputs.  explain () shows the operator tree that
+ * would run, with the algorithms chosen and estimated row counts, and
+ * explainAnalyze () runs it and adds what each operator actually did.
+ */
+public abstract class Plan
+{
+    /** Estimated number of result rows (negative if not estimated).
+     */
+    double estRows = -1;
+
+    /** The attribute names and key produced (null until derived).
+     */
+    private String [] outAttribute;
+    private String [] outKey;
+
+    /***************************************************************************
+     * Start a plan with a scan of the given table.
+     * @param table  the table to scan
+     * @return  the scan node
+     */
+    public static Plan scan (Table table)
+    {
+        return new Scan (table);
+    } // scan
+
+    /***************************************************************************
+     * Add a selection on top of this plan.
+     * @param condition  the check condition for tuples
+     * @return  the select node
+     */
+    public Plan select (String condition)
+    {
+        return new Select (this, condition);
+    } // select
+
+    /***************************************************************************
+     * Add a projection on top of this plan.
+     * @param attributeList  the attributes to project onto
+     * @return  the project node
+     */
+    public Plan project (String attributeList)
+    {
+        return new Project (this, attributeList.split (" "));
+    } // project
+
+    /***************************************************************************
+     * Join this plan with plan2.
+     * @param condition  the join condition for tuples
+     * @param plan2      the rhs plan
+     * @return  the join node
+     */
+    public Plan join (String condition, Plan plan2)
+    {
+        return new Join (this, condition, plan2);
+    } // join
+
+    /***************************************************************************
+     * Union this plan with plan2.
+     * @param plan2  the rhs plan
+     * @return  the union node
+     */
+    public Plan union (Plan plan2)
+    {
+        return new Union (this, plan2);
+    } // union
+
+    /***************************************************************************
+     * Take the difference of this plan and plan2.
+     * @param plan2  the rhs plan
+     * @return  the minus node
+     */
+    public Plan minus (Plan plan2)
+    {
+        return new Minus (this, plan2);
+    } // minus
+
+    /***************************************************************************
+     * Rewrite the plan, pushing selections down and pruning unused columns.
+     * @return  the optimized (equivalent) plan
+     */
+    public Plan optimize ()
+    {
+        return rewrite (this);
+    } // optimize
+
+    /***************************************************************************
+     * Execute the plan as a pipeline of operators and materialize the result.
+     * When the ResultCache is on, a result computed earlier from the same
+     * versions of the tables is reused.
+     * @return  the table holding the result
+     */
+    public Table execute ()
+    {
+        String cacheKey = ResultCache.enabled () ? signature () : null;
+        Table  hit      = ResultCache.get (cacheKey);
+        if (hit != null) return hit;
+
+        return ResultCache.put (cacheKey, toOperator ().materialize ());
+    } // execute
+
+    /***************************************************************************
+     * Return a normalized one-line form of the plan that identifies the tables
+     * scanned (and their versions), for keying cached results.
+     * @return  the plan's signature
+     */
+    String signature ()
+    {
+        StringBuilder sb = new StringBuilder ();
+        if (this instanceof Scan)        sb.append ("Scan ").append (((Scan) this).table.cacheId ());
+        else if (this instanceof Select) sb.append ("Select [").append (normalize (((Select) this).condition)).append (']');
+        else                             sb.append (label ());
+        Plan [] c = children ();
+        for (int i = 0; i < c.length; i++) sb.append (i == 0 ? " (" : ", ").append (c [i].signature ());
+        if (c.length > 0) sb.append (')');
+        return sb.toString ();
+    } // signature
+
+    /***************************************************************************
+     * Normalize a condition: collapse white space and, for a conjunction, put
+     * the conjuncts in a canonical order.
+     * @param condition  the condition
+     * @return  the normalized condition
+     */
+    static String normalize (String condition)
+    {
+        List <String> list = new ArrayList <> ();
+        for (String c : conjuncts (condition)) list.add (c.replaceAll ("\\s+", " "));
+        if (! condition.contains (" | ")) Collections.sort (list);
+        return String.join (" & ", list);
+    } // normalize
+
+    /***************************************************************************
+     * Describe the operator tree that would execute this plan: the algorithm of
+     * each operator and its estimated number of result rows (from the tables'
+     * statistics, see TableStats).  Nothing is run.
+     * #usage out.println (plan.optimize ().explain ())
+     * @return  the operator tree, one operator per line
+     */
+    public String explain ()
+    {
+        Map <Operator, Plan> nodes = new IdentityHashMap <> ();
+        Operator             root  = build (nodes, null);
+        StringBuilder        sb    = new StringBuilder ();
+        explain (sb, "", root, nodes);
+        return sb.toString ();
+    } // explain
+
+    /***************************************************************************
+     * Execute the plan (bypassing the ResultCache) and describe what each
+     * operator did: its algorithm, estimated and actual numbers of rows, time
+     * spent (including its inputs), and the records read from FileLists and the
+     * index probes made by the operator itself (excluding its inputs).
+     * #usage out.println (plan.optimize ().explainAnalyze ())
+     * @return  the operator tree, one operator per line, and the total time
+     */
+    public String explainAnalyze ()
+    {
+        Map <Operator, Plan> nodes = new IdentityHashMap <> ();
+        Operator             root;
+        long                 total;
+        try {
+            root = build (nodes, Metrics.startTally ());
+            long  start  = System.nanoTime ();
+            Table result = root.materialize ();
+            total = System.nanoTime () - start;
+            result.close ();
+        } finally {
+            Metrics.stopTally ();
+        } // try
+
+        StringBuilder sb = new StringBuilder ();
+        explain (sb, "", root, nodes);
+        sb.append (String.format ("Total: %d rows in %.3f ms (operator times include their inputs)%n",
+                                  ((Operator.Analyze) root).rows, total / 1e6));
+        return sb.toString ();
+    } // explainAnalyze
+
+    /***************************************************************************
+     * Append the description of operator op and (indented) its inputs.
+     */
+    private static void explain (StringBuilder sb, String indent, Operator op, Map <Operator, Plan> nodes)
+    {
+        Plan plan = nodes.get (op);
+        sb.append (indent).append (op.label ());
+        if (op instanceof Operator.Analyze) {
+            Operator.Analyze a = (Operator.Analyze) op;
+            long records = a.records, lookups = a.lookups;
+            for (Operator c : op.children ()) {
+                if (c instanceof Operator.Analyze) {
+                    records -= ((Operator.Analyze) c).records;
+                    lookups -= ((Operator.Analyze) c).lookups;
+                } // if
+            } // for
+            sb.append (plan == null ? "  (" : "  (rows ~ " + Math.round (plan.estimate ()) + ", ");
+            if (a.opened) {
+                sb.append (String.format ("actual %d, %.3f ms, %d records read, %d index probes)",
+                                          a.rows, a.nanos / 1e6, records, lookups));
+            } else {
+                sb.append ("never executed)");
+            } // if
+        } else if (plan != null) {
+            sb.append ("  (rows ~ ").append (Math.round (plan.estimate ())).append (')');
+        } // if
+        sb.append ('\n');
+        for (Operator c : op.children ()) explain (sb, indent + "  ", c, nodes);
+    } // explain
+
+    /***************************************************************************
+     * Build the (unopened) pipelined operator tree for this plan.
+     * @return  the root operator
+     */
+    Operator toOperator ()
+    {
+        return build (null, null);
+    } // toOperator
+
+    /***************************************************************************
+     * Build the operator tree for this plan, recording which plan node each
+     * operator comes from and, if a tally is given, measuring each operator
+     * (see Operator.Analyze).
+     * @param nodes    the map from operators to plan nodes to fill (or null)
+     * @param tally    the tally of the current thread (null => no measuring)
+     * @return  the root operator
+     */
+    abstract Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally);
+
+    /***************************************************************************
+     * Wrap an operator built for this node for measuring (if a tally is given)
+     * and record it as coming from this node.
+     */
+    Operator node (Map <Operator, Plan> nodes, Metrics.Tally tally, Operator op)
+    {
+        if (tally != null) op = new Operator.Analyze (op, tally);
+        if (nodes != null) nodes.put (op, this);
+        return op;
+    } // node
+
+    /***************************************************************************
+     * Return the estimated number of result rows: the one set by the planner
+     * (see JoinOptimizer) or one derived from the tables' statistics.
+     * @return  the estimated row count
+     */
+    double estimate ()
+    {
+        if (estRows >= 0) return estRows;
+        if (this instanceof Scan)    return ((Scan) this).table.getStats ().rows ();
+        if (this instanceof Project) return ((Project) this).child.estimate ();
+        if (this instanceof Union)   return ((Union) this).left.estimate () + ((Union) this).right.estimate ();
+        if (this instanceof Minus)   return ((Minus) this).left.estimate ();
+        if (this instanceof Select) {
+            Select s   = (Select) this;
+            double sel = 1.0;
+            for (String c : conjuncts (s.condition)) sel *= selectivity (s.child, c);
+            return s.child.estimate () * sel;
+        } // if
+        Join      j   = (Join) this;
+        double    l   = j.left.estimate (), r = j.right.estimate ();
+        String [] tok = j.condition.trim ().split ("\\s+");
+        if (tok.length == 3 && tok [1].equals ("==")) {
+            TableStats.ColumnStats a = column (this, tok [0]), b = column (this, tok [2]);
+            double d = Math.max (a == null ? 1 : a.distinct (), b == null ? 1 : b.distinct ());
+            return l * r / Math.max (1, d > 1 ? d : Math.max (l, r));
+        } // if
+        return l * r * DEFAULT_SELECTIVITY;
+    } // estimate
+
+    /** Selectivity assumed for a condition the statistics cannot estimate.
+     */
+    private static final double DEFAULT_SELECTIVITY = 1.0 / 3;
+
+    /***************************************************************************
+     * Estimate the selectivity of a comparison "attribute op literal" over the
+     * output of plan p (DEFAULT_SELECTIVITY if it is not of that form).
+     */
+    private static double selectivity (Plan p, String comparison)
+    {
+        String [] tok = comparison.trim ().split ("\\s+");
+        if (tok.length != 3) return DEFAULT_SELECTIVITY;
+        TableStats.ColumnStats c = column (p, tok [0]);
+        if (c == null || c.min () == null) return DEFAULT_SELECTIVITY;
+        String lit = tok [2].replaceAll ("^'|'$", "");
+        try {
+            Comparable v;
+            if (c.min () instanceof String)         v = lit;
+            else if (c.min () instanceof Character) v = lit.length () == 1 ? lit.charAt (0) : null;
+            else {
+                @SuppressWarnings("unchecked")
+                Comparable cv = String2Type.cons (c.min ().getClass (), lit);
+                v = cv;
+            } // if
+            return v == null ? DEFAULT_SELECTIVITY : c.selectivity (tok [1], v);
+        } catch (RuntimeException ex) {
+            return DEFAULT_SELECTIVITY;                    // not a literal of the column's type
+        } // try
+    } // selectivity
+
+    /***************************************************************************
+     * Find the statistics of the stored column that attribute attr of plan p's
+     * output comes from (null if it is not a stored column).
+     */
+    private static TableStats.ColumnStats column (Plan p, String attr)
+    {
+        attr = attr.replace ('.', '_');
+        if (p instanceof Scan) return ((Scan) p).table.getStats ().column (attr);
+        if (p instanceof Join) {
+            Join      j     = (Join) p;
+            String [] out   = j.attributes ();
+            int       pos   = Table.columnPos (attr, out);
+            int       nl    = out.length - j.right.attributes ().length;
+            if (pos < 0) return null;
+            return pos < nl ? column (j.left, attr) : column (j.right, j.right.attributes () [pos - nl]);
+        } // if
+        Plan [] c = p.children ();
+        return c.length == 0 ? null : column (c [0], attr);
+    } // column
+
+    /***************************************************************************
+     * Return the child nodes of this node.
+     * @return  the children
+     */
+    abstract Plan [] children ();
+
+    /***************************************************************************
+     * Return a one-line description of this node (without its children).
+     * @return  the description
+     */
+    abstract String label ();
+
+    /***************************************************************************
+     * Return the attribute names produced by this plan (derived from the plan
+     * nodes, without building operators, and computed once per node).
+     * @return  the attribute names
+     */
+    String [] attributes ()
+    {
+        if (outAttribute == null) outAttribute = deriveAttributes ();
+        return outAttribute;
+    } // attributes
+
+    /***************************************************************************
+     * Return the primary key of the tuples produced by this plan (computed
+     * once per node).
+     * @return  the key attribute names
+     */
+    String [] key ()
+    {
+        if (outKey == null) outKey = deriveKey ();
+        return outKey;
+    } // key
+
+    /***************************************************************************
+     * Return the name the operators of this plan give their results (that of
+     * its leftmost scan).
+     * @return  the name
+     */
+    String name ()
+    {
+        return children () [0].name ();
+    } // name
+
+    /***************************************************************************
+     * Derive the attribute names produced, as the operator built would have
+     * them (by default, those of the first child).
+     */
+    String [] deriveAttributes ()
+    {
+        return children () [0].attributes ();
+    } // deriveAttributes
+
+    /***************************************************************************
+     * Derive the primary key produced, as the operator built would have it (by
+     * default, that of the first child).
+     */
+    String [] deriveKey ()
+    {
+        return children () [0].key ();
+    } // deriveKey
+
+    /***************************************************************************
+     * Convert the plan to an indented tree, one node per line.
+     * @return  the string representation
+     */
+    public String toString ()
+    {
+        StringBuilder sb = new StringBuilder ();
+        format (sb, "");
+        return sb.toString ();
+    } // toString
+
+    private void format (StringBuilder sb, String indent)
+    {
+        sb.append (indent).append (label ());
+        if (estRows >= 0) sb.append ("  (rows ~ ").append (Math.round (estRows)).append (')');
+        sb.append ('\n');
+        for (Plan c : children ()) c.format (sb, indent + "  ");
+    } // format
+
+    //------------------------------- Plan Nodes -------------------------------
+
+    /***************************************************************************
+     * Scan of a stored table.
+     */
+    static class Scan
+           extends Plan
+    {
+        final Table table;
+
+        Scan (Table _table)              { table = _table; }
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            return node (nodes, tally, table.scan ());
+        } // build
+
+        Plan [] children ()              { return new Plan [0]; }
+        String label ()                  { return "Scan " + table.getName (); }
+        String name ()                   { return table.getName (); }
+        String [] deriveAttributes ()    { return table.scan ().attribute; }
+        String [] deriveKey ()           { return table.scan ().key; }
+
+    } // Scan class
+
+    /***************************************************************************
+     * Selection of the tuples satisfying a condition.
+     */
+    static class Select
+           extends Plan
+    {
+        final Plan   child;
+        final String condition;
+
+        Select (Plan _child, String _condition) { child = _child; condition = _condition; }
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            if (child instanceof Scan) {                         // may become one vectorized operator
+                Operator op = ((Scan) child).table.scan ().select (condition);
+                if (op instanceof Operator.VectorSelect) return node (nodes, tally, op);
+            } // if
+            return node (nodes, tally, child.build (nodes, tally).select (condition));
+        } // build
+
+        Plan [] children ()              { return new Plan [] { child }; }
+        String label ()                  { return "Select [" + condition + "]"; }
+
+    } // Select class
+
+    /***************************************************************************
+     * Projection onto a list of attributes.
+     */
+    static class Project
+           extends Plan
+    {
+        final Plan      child;
+        final String [] attrs;
+
+        Project (Plan _child, String [] _attrs) { child = _child; attrs = _attrs; }
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            Operator in   = child.build (nodes, tally);
+            Operator proj = new Operator.Project (in, attrs);      // as Operator.project, measuring both stages
+            if (Operator.Project.keepsKey (in.key, attrs)) return node (nodes, tally, proj);
+            if (tally != null) proj = new Operator.Analyze (proj, tally);
+            return node (nodes, tally, new Operator.Distinct (proj));
+        } // build
+
+        Plan [] children ()              { return new Plan [] { child }; }
+        String label ()                  { return "Project [" + String.join (" ", attrs) + "]"; }
+        String [] deriveAttributes ()    { return attrs; }
+
+        String [] deriveKey ()
+        {
+            return Operator.Project.keepsKey (child.key (), attrs) ? child.key () : attrs;
+        } // deriveKey
+
+    } // Project class
+
+    /***************************************************************************
+     * Join of two plans, with an optional join method (null for the default).
+     */
+    static class Join
+           extends Plan
+    {
+        final Plan       left;
+        final String     condition;
+        final Plan       right;
+        final JoinMethod method;
+
+        Join (Plan _left, String _condition, Plan _right) { this (_left, _condition, _right, null); }
+        Join (Plan _left, String _condition, Plan _right, JoinMethod _method)
+        {
+            left = _left; condition = _condition; right = _right; method = _method;
+        } // constructor
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            return node (nodes, tally, left.build (nodes, tally).join (condition, right.build (nodes, tally), method));
+        } // build
+
+        Plan [] children ()              { return new Plan [] { left, right }; }
+        String label ()                  { return "Join [" + condition + "]" + (method == null ? "" : " " + method); }
+
+        String [] deriveAttributes ()
+        {
+            return Operator.Join.joinAttributes (left.attributes (), right.attributes (), right.name ());
+        } // deriveAttributes
+
+        String [] deriveKey ()
+        {
+            return Operator.Join.joinKey (left.attributes (), left.key (), right.attributes (), right.key (), attributes (),
+                                          Operator.Join.fix (Table.infix2postfix (condition)));
+        } // deriveKey
+
+    } // Join class
+
+    /***************************************************************************
+     * Union of two plans.
+     */
+    static class Union
+           extends Plan
+    {
+        final Plan left;
+        final Plan right;
+
+        Union (Plan _left, Plan _right)  { left = _left; right = _right; }
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            return node (nodes, tally, left.build (nodes, tally).union (right.build (nodes, tally)));
+        } // build
+
+        Plan [] children ()              { return new Plan [] { left, right }; }
+        String label ()                  { return "Union"; }
+
+    } // Union class
+
+    /***************************************************************************
+     * Difference of two plans.
+     */
+    static class Minus
+           extends Plan
+    {
+        final Plan left;
+        final Plan right;
+
+        Minus (Plan _left, Plan _right)  { left = _left; right = _right; }
+
+        Operator build (Map <Operator, Plan> nodes, Metrics.Tally tally)
+        {
+            return node (nodes, tally, left.build (nodes, tally).minus (right.build (nodes, tally)));
+        } // build
+
+        Plan [] children ()              { return new Plan [] { left, right }; }
+        String label ()                  { return "Minus"; }
+
+    } // Minus class
+
+    //------------------------------- Rewriting --------------------------------
+
+    /***************************************************************************
+     * Rewrite a plan bottom-up, pushing selections down and pruning columns.
+     * @param p  the plan to rewrite
+     * @return  the rewritten plan
+     */
+    static Plan rewrite (Plan p)
+    {
+        if (p instanceof Select) {
+            Select s = (Select) p;
+            return pushDown (rewrite (s.child), conjuncts (s.condition));
+        } // if
+        if (p instanceof Project) {
+            Project pr    = (Project) p;
+            Plan    child = rewrite (pr.child);
+            if (child instanceof Project &&
+                Arrays.asList (((Project) child).child.attributes ()).containsAll (Arrays.asList (pr.attrs))) {
+                child = ((Project) child).child;                 // collapse nested projections
+            } // if
+            return new Project (prune (child, new HashSet <> (Arrays.asList (pr.attrs))), pr.attrs);
+        } // if
+        if (p instanceof Join) {
+            Join j = (Join) p;
+            return new Join (rewrite (j.left), j.condition, rewrite (j.right), j.method);
+        } // if
+        if (p instanceof Union)  return new Union (rewrite (((Union) p).left), rewrite (((Union) p).right));
+        if (p instanceof Minus)  return new Minus (rewrite (((Minus) p).left), rewrite (((Minus) p).right));
+        return p;
+    } // rewrite
+
+    /***************************************************************************
+     * Apply the conjuncts to plan p, placing each as far down as it can go.
+     * Below a union only conjuncts on its key columns go (see Union); below a
+     * minus, which compares whole tuples, every conjunct goes.
+     * @param p          the plan
+     * @param conjuncts  the conditions to apply (all must hold)
+     * @return  the plan with the selections applied
+     */
+    static Plan pushDown (Plan p, List <String> conjuncts)
+    {
+        if (conjuncts.isEmpty ()) return p;
+
+        if (p instanceof Select) {
+            List <String> all = new ArrayList <> (conjuncts);
+            all.addAll (conjuncts (((Select) p).condition));
+            return pushDown (((Select) p).child, all);
+        } // if
+        if (p instanceof Project) {
+            Project pr = (Project) p;
+            return new Project (pushDown (pr.child, conjuncts), pr.attrs);
+        } // if
+        if (p instanceof Union) {
+            // a union keeps the left tuple of a key found on both sides, so only a
+            // conjunct on key columns (which the two tuples share) may go below it
+            Union         u     = (Union) p;
+            List <String> onKey = new ArrayList <> (), rest = new ArrayList <> ();
+            List <String> uKey  = Arrays.asList (u.key ());
+            String []     uAttr = u.attributes ();
+            for (String c : conjuncts) {
+                boolean keyOnly = true;
+                for (String t : c.split (" ")) {
+                    if (Table.columnPos (t, uAttr) >= 0 && ! uKey.contains (t)) keyOnly = false;
+                } // for
+                (keyOnly ? onKey : rest).add (c);
+            } // for
+            return wrap (new Union (pushDown (u.left, onKey), pushDown (u.right, onKey)), rest);
+        } // if
+        if (p instanceof Minus) {
+            Minus m = (Minus) p;
+            return new Minus (pushDown (m.left, conjuncts), pushDown (m.right, conjuncts));
+        } // if
+        if (p instanceof Join) {
+            Join      j     = (Join) p;
+            String [] out   = j.attributes ();
+            String [] rAttr = j.right.attributes ();
+            int       nl    = out.length - rAttr.length;
+            List <String> lConj = new ArrayList <> (), rConj = new ArrayList <> (), rest = new ArrayList <> ();
+            for (String c : conjuncts) {
+                String [] tok = c.split (" ");
+                boolean   onL = false, onR = false;
+                for (String t : tok) {
+                    int pos = Table.columnPos (t, out);
+                    if (pos >= 0 && pos < nl) onL = true;
+                    if (pos >= nl)            onR = true;
+                } // for
+                if (onL && ! onR) {
+                    lConj.add (c);
+                } else if (onR && ! onL) {
+                    for (int i = 0; i < tok.length; i++) {         // rename to the right's attributes
+                        int pos = Table.columnPos (tok [i], out);
+                        if (pos >= nl) tok [i] = rAttr [pos - nl];
+                    } // for
+                    rConj.add (String.join (" ", tok));
+                } else {
+                    rest.add (c);
+                } // if
+            } // for
+            return wrap (new Join (pushDown (j.left, lConj), j.condition, pushDown (j.right, rConj), j.method), rest);
+        } // if
+        return wrap (p, conjuncts);
+    } // pushDown
+
+    /***************************************************************************
+     * Prune the columns of plan p that are not needed above it.  Only the inputs
+     * of joins are pruned; their keys and the attributes whose names clash with
+     * the other input are kept, so the join's keys and attribute names do not
+     * change.
+     * @param p       the plan
+     * @param needed  the attribute names needed from p
+     * @return  the pruned plan
+     */
+    static Plan prune (Plan p, Set <String> needed)
+    {
+        if (p instanceof Select) {
+            Select      s   = (Select) p;
+            Set <String> req = new HashSet <> (needed);
+            req.addAll (Arrays.asList (s.condition.replace ('.', '_').split (" ")));
+            return new Select (prune (s.child, req), s.condition);
+        } // if
+        if (p instanceof Project) {
+            Project pr = (Project) p;
+            return new Project (prune (pr.child, new HashSet <> (Arrays.asList (pr.attrs))), pr.attrs);
+        } // if
+        if (! (p instanceof Join)) return p;
+
+        Join      j     = (Join) p;
+        String [] out   = j.attributes ();
+        String [] lAttr = j.left.attributes ();
+        String [] rAttr = j.right.attributes ();
+        Set <String> req = new HashSet <> (needed);
+        req.addAll (Arrays.asList (j.condition.replace ('.', '_').split (" ")));
+
+        List <String> lKeep = new ArrayList <> (), rKeep = new ArrayList <> ();
+        List <String> lKey  = Arrays.asList (j.left.key ()), rKey = Arrays.asList (j.right.key ());
+        for (int i = 0; i < out.length; i++) {
+            boolean left = i < lAttr.length;
+            String  a    = left ? lAttr [i] : rAttr [i - lAttr.length];
+            boolean keep = req.contains (out [i]) || (left ? lKey : rKey).contains (a) ||
+                           Table.columnPos (a, left ? rAttr : lAttr) >= 0;
+            if (keep) (left ? lKeep : rKeep).add (a);
+        } // for
+
+        Plan newL = prune (j.left,  new HashSet <> (lKeep));
+        Plan newR = prune (j.right, new HashSet <> (rKeep));
+        if (lKeep.size () < lAttr.length) newL = new Project (newL, lKeep.toArray (new String [0]));
+        if (rKeep.size () < rAttr.length) newR = new Project (newR, rKeep.toArray (new String [0]));
+        return new Join (newL, j.condition, newR, j.method);
+    } // prune
+
+    /***************************************************************************
+     * Split a condition into conjuncts.  A condition using "|" is kept whole,
+     * since "&" binds tighter and splitting it would change its meaning.
+     * @param condition  the condition
+     * @return  the conjuncts
+     */
+    static List <String> conjuncts (String condition)
+    {
+        List <String> list = new ArrayList <> ();
+        if (condition.contains (" | ")) list.add (condition.trim ());
+        else for (String c : condition.split (" & ")) list.add (c.trim ());
+        return list;
+    } // conjuncts
+
+    /***************************************************************************
+     * Put a selection for the conjuncts (if any) on top of p.
+     * @param p          the plan
+     * @param conjuncts  the conditions
+     * @return  the plan with the selection
+     */
+    private static Plan wrap (Plan p, List <String> conjuncts)
+    {
+        return conjuncts.isEmpty () ? p : new Select (p, String.join (" & ", conjuncts));
+    } // wrap
+
+} // Plan class
+
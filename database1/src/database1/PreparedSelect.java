@@ -0,0 +1,106 @@
+
+/*******************************************************************************
+ * @file  PreparedSelect.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class is a selection prepared on a table, e.g.,
+ *   PreparedSelect ps = movie.prepare ("title == ? & year > ?");
+ *   Table t = ps.execute ("Star_Wars", 1970);
+ * Its condition was parsed and compiled once (see Condition), so executing it
+ * again with different parameter values costs only the scan.  Parameters are
+ * numbered from 1 and may be given as values of the column's domain or as
+ * strings (converted like literals).  A prepared selection is not thread-safe;
+ * prepare one per thread (they share the table's cache of compiled conditions).
+ */
+public class PreparedSelect
+{
+    /** The table selected from.
+     */
+    private final Table table;
+
+    /** The condition text.
+     */
+    private final String condition;
+
+    /** The compiled condition.
+     */
+    private final Condition compiled;
+
+    /** The bound parameter values.
+     */
+    private final Comparable [] params;
+
+    PreparedSelect (Table _table, String _condition, Condition _compiled)
+    {
+        table     = _table;
+        condition = _condition;
+        compiled  = _compiled;
+        params    = new Comparable [compiled.params ()];
+    } // constructor
+
+    /***************************************************************************
+     * Bind a value to a parameter.
+     * @param i      the parameter number (from 1)
+     * @param value  the value
+     * @return  this prepared selection
+     */
+    public PreparedSelect set (int i, Comparable value)
+    {
+        if (i < 1 || i > params.length) {
+            throw new IndexOutOfBoundsException ("PreparedSelect: no parameter " + i + " in " + condition);
+        } // if
+        params [i - 1] = compiled.bind (i - 1, value);
+        return this;
+    } // set
+
+    /***************************************************************************
+     * Return the number of parameters.
+     * @return  the parameter count
+     */
+    public int params ()
+    {
+        return params.length;
+    } // params
+
+    /***************************************************************************
+     * Execute the selection with the given parameter values (all of them).
+     * @param values  the parameter values, in order
+     * @return  the table consisting of tuples satisfying the condition
+     */
+    public Table execute (Comparable... values)
+    {
+        if (values.length != params.length) {
+            throw new IllegalArgumentException ("PreparedSelect: " + condition + " takes " + params.length +
+                                                " parameters, not " + values.length);
+        } // if
+        for (int i = 0; i < values.length; i++) params [i] = compiled.bind (i, values [i]);
+        return execute ();
+    } // execute
+
+    /***************************************************************************
+     * Execute the selection with the parameter values bound by set.
+     * @return  the table consisting of tuples satisfying the condition
+     */
+    public Table execute ()
+    {
+        for (int i = 0; i < params.length; i++) {
+            if (params [i] == null) throw new IllegalStateException ("PreparedSelect: parameter " + (i + 1) + " not set");
+        } // for
+        return table.select (compiled, params.clone ());
+    } // execute
+
+    /***************************************************************************
+     * Convert the prepared selection to a string.
+     * @return  the string representation
+     */
+    public String toString ()
+    {
+        return table.getName () + ".prepare (" + condition + ") " + Arrays.toString (params);
+    } // toString
+
+} // PreparedSelect class
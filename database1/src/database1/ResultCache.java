@@ -0,0 +1,206 @@
+
+/*******************************************************************************
+ * @file  ResultCache.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class caches the results of queries that are re-run while their input
+ * tables do not change.  It is off unless given a memory budget (in bytes, by
+ * the system property database1.resultCache or by setBudget).  A result is
+ * keyed by the query (a normalized plan, see Plan.signature, or a Table operator
+ * call) together with the identity and version of each input table.  Since a
+ * table's version is bumped by every insert, entries for changed tables are
+ * never hit again and simply age out: the least recently used entries are
+ * evicted when the cached results exceed the budget.  A hit returns a fresh
+ * temporary table, so callers may use and close results as usual.
+ */
+public class ResultCache
+{
+    /** Per-tuple overhead assumed besides the packed tuple size (array header).
+     */
+    private static final int OVERHEAD = 16;
+
+    /** Memory budget in bytes (0 => off).
+     */
+    private static long budget = Long.getLong ("database1.resultCache", 0L);
+
+    /** Estimated bytes held by the cached results.
+     */
+    private static long used;
+
+    /** Number of lookups that hit and missed.
+     */
+    private static long hits, misses;
+
+    /** The cached results, in access order.
+     */
+    private static final LinkedHashMap <String, Entry> cache = new LinkedHashMap <> (16, 0.75f, true);
+
+    /***************************************************************************
+     * A cached result: the schema and tuples of the result table.
+     */
+    private static class Entry
+    {
+        final String          name;
+        final String []       attribute;
+        final Class []        domain;
+        final String []       key;
+        final Comparable [][] tuples;
+        final long            bytes;
+
+        Entry (String _name, Operator scan, Comparable [][] _tuples, long _bytes)
+        {
+            name = _name; attribute = scan.attribute; domain = scan.domain; key = scan.key;
+            tuples = _tuples; bytes = _bytes;
+        } // constructor
+
+    } // Entry class
+
+    /***************************************************************************
+     * Set the memory budget, evicting results as needed (0 turns caching off).
+     * @param _budget  the budget in bytes
+     */
+    public static synchronized void setBudget (long _budget)
+    {
+        budget = _budget;
+        evict ();
+    } // setBudget
+
+    /***************************************************************************
+     * Determine whether results are being cached.
+     * @return  whether the cache is on
+     */
+    public static synchronized boolean enabled ()
+    {
+        return budget > 0;
+    } // enabled
+
+    /***************************************************************************
+     * Look up the result for a query.  The cached tuples are replayed in the
+     * order they were added to the original result, so a hit holds the same
+     * rows (even those whose key repeats) as a miss.
+     * @param queryKey  the key of the query (null => no lookup)
+     * @return  a fresh temporary table holding the cached result, or null
+     */
+    static Table get (String queryKey)
+    {
+        Entry e;
+        synchronized (ResultCache.class) {
+            if (queryKey == null) return null;
+            e = cache.get (queryKey);
+            if (e == null) { misses++; return null; }
+            hits++;
+        } // synchronized
+        Table result = new Table (Table.tempName (e.name), e.attribute, e.domain, e.key, true);
+        for (Comparable [] tup : e.tuples) result.append (tup);
+        return result;
+    } // get
+
+    /***************************************************************************
+     * Cache the result of a query, unless it alone exceeds the budget.
+     * @param queryKey  the key of the query (null => nothing is cached)
+     * @param result    the result table
+     * @return  the result table (for chaining)
+     */
+    static Table put (String queryKey, Table result)
+    {
+        if (queryKey == null || ! enabled ()) return result;
+        Operator      scan = result.scan ();
+        long          size = result.tuples ().size ();
+        long          bytes = size * (result.tupleSize () + OVERHEAD + 8L * scan.attribute.length);
+        synchronized (ResultCache.class) {
+            if (bytes > budget) return result;
+        } // synchronized
+
+        Entry e = new Entry (result.getName ().replaceAll ("\\d+$", ""), scan,
+                             result.tuples ().toArray (new Comparable [0][]), bytes);   // all rows, in order
+
+        synchronized (ResultCache.class) {
+            Entry old = cache.put (queryKey, e);
+            if (old != null) used -= old.bytes;
+            used += bytes;
+            evict ();
+        } // synchronized
+        return result;
+    } // put
+
+    /***************************************************************************
+     * Remove all cached results.
+     */
+    public static synchronized void clear ()
+    {
+        cache.clear ();
+        used = 0;
+    } // clear
+
+    /***************************************************************************
+     * Return a summary of the cache's use.
+     * @return  the entries, bytes used, budget, hits and misses
+     */
+    public static synchronized String summary ()
+    {
+        return "ResultCache: " + cache.size () + " results, " + used + " of " + budget + " bytes, " +
+               hits + " hits, " + misses + " misses";
+    } // summary
+
+    /***************************************************************************
+     * Evict the least recently used results until within the budget.
+     */
+    private static void evict ()
+    {
+        Iterator <Entry> it = cache.values ().iterator ();
+        while (used > budget && it.hasNext ()) {
+            used -= it.next ().bytes;
+            it.remove ();
+        } // while
+    } // evict
+
+    /***************************************************************************
+     * The main method is used for testing purposes only: it checks that a hit
+     * prints the same rows as the miss that cached them, for a join result
+     * whose key repeats.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        Table movie   = new Table ("rc_movie", "title year genre", "String Integer String", "title year");
+        Table starsIn = new Table ("rc_starsIn", "movieTitle movieYear starName", "String Integer String",
+                                   "movieTitle movieYear starName");
+        movie.insert (new Comparable [] { "Star_Wars", 1977, "sciFi" });
+        movie.insert (new Comparable [] { "Rocky", 1985, "action" });
+        starsIn.insert (new Comparable [] { "Star_Wars", 1977, "Carrie_Fisher" });
+        starsIn.insert (new Comparable [] { "Star_Wars", 1977, "Mark_Hamill" });
+        starsIn.insert (new Comparable [] { "Rocky", 1985, "Sylvester_Stallone" });
+
+        setBudget (1 << 20);
+        String miss = printed (movie.join ("title == movieTitle", starsIn));
+        String hit  = printed (movie.join ("title == movieTitle", starsIn));
+        System.out.println (miss);
+        System.out.println ("hit prints the same rows as the miss: " + hit.equals (miss));
+        System.out.println (summary ());
+        movie.close ();
+        starsIn.close ();
+    } // main
+
+    /***************************************************************************
+     * Return what the table prints, without its name line.
+     */
+    private static String printed (Table table)
+    {
+        java.io.PrintStream           stdout = System.out;
+        java.io.ByteArrayOutputStream buf    = new java.io.ByteArrayOutputStream ();
+        System.setOut (new java.io.PrintStream (buf, true));
+        try {
+            table.print ();
+        } finally {
+            System.setOut (stdout);
+        } // try
+        String s = buf.toString ();
+        return s.substring (s.indexOf ('|'));
+    } // printed
+
+} // ResultCache class
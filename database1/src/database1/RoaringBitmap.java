@@ -0,0 +1,316 @@
+
+/*******************************************************************************
+ * @file  RoaringBitmap.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class implements a compressed bitmap of non-negative integers in the
+ * manner of Roaring bitmaps: the integers are grouped by their high 16 bits
+ * into chunks, and each chunk stores its low 16 bits either as a sorted array
+ * (up to 4096 values, 2 bytes each) or as a 65536-bit bitmap (8 KB), whichever
+ * is smaller.  Sparse and dense sets are thus both compact, and AND, OR and
+ * AND NOT work chunk by chunk, merging arrays and expanding a chunk to machine
+ * words only when the other side is already a bitmap.
+ */
+final class RoaringBitmap
+{
+    /** Largest number of values kept in an array chunk.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /** The chunk keys (high 16 bits), in increasing order.
+     */
+    private char [] keys = new char [4];
+
+    /** The chunks: char [] (sorted, of length >= card) or long [1024].
+     */
+    private Object [] chunks = new Object [4];
+
+    /** The number of values in each chunk.
+     */
+    private int [] card = new int [4];
+
+    /** The number of chunks.
+     */
+    private int size;
+
+    /***************************************************************************
+     * Add a value (appending in increasing order is fastest).
+     * @param x  the value (non-negative)
+     */
+    void add (int x)
+    {
+        char hi = (char) (x >>> 16), lo = (char) x;
+        int  i  = size > 0 && keys [size - 1] == hi ? size - 1 : find (hi);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk (i, hi, new char [4], 0);
+        } // if
+
+        if (chunks [i] instanceof long []) {
+            long [] w = (long []) chunks [i];
+            if ((w [lo >>> 6] & 1L << lo) == 0) { w [lo >>> 6] |= 1L << lo; card [i]++; }
+            return;
+        } // if
+
+        char [] a = (char []) chunks [i];
+        int     n = card [i];
+        int     p = n > 0 && a [n - 1] < lo ? -n - 1 : Arrays.binarySearch (a, 0, n, lo);
+        if (p >= 0) return;
+        p = -p - 1;
+        if (n == ARRAY_MAX) {
+            long [] w = toWords (a, n);
+            w [lo >>> 6] |= 1L << lo;
+            chunks [i] = w;
+        } else {
+            if (n == a.length) chunks [i] = a = Arrays.copyOf (a, Math.min (ARRAY_MAX, 2 * n));
+            System.arraycopy (a, p, a, p + 1, n - p);
+            a [p] = lo;
+        } // if
+        card [i]++;
+    } // add
+
+    /***************************************************************************
+     * Determine whether the bitmap contains a value.
+     * @param x  the value
+     * @return  whether it is in the bitmap
+     */
+    boolean contains (int x)
+    {
+        char hi = (char) (x >>> 16), lo = (char) x;
+        int  i  = find (hi);
+        if (i < 0) return false;
+        if (chunks [i] instanceof long []) return (((long []) chunks [i]) [lo >>> 6] & 1L << lo) != 0;
+        return Arrays.binarySearch ((char []) chunks [i], 0, card [i], lo) >= 0;
+    } // contains
+
+    /***************************************************************************
+     * Return the number of values in the bitmap.
+     * @return  the cardinality
+     */
+    int cardinality ()
+    {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += card [i];
+        return n;
+    } // cardinality
+
+    /***************************************************************************
+     * Return the values in the bitmap, in increasing order.
+     * @return  the values
+     */
+    int [] toArray ()
+    {
+        int [] out = new int [cardinality ()];
+        int    k   = 0;
+        for (int i = 0; i < size; i++) {
+            int base = keys [i] << 16;
+            if (chunks [i] instanceof long []) {
+                long [] w = (long []) chunks [i];
+                for (int j = 0; j < w.length; j++) {
+                    for (long b = w [j]; b != 0; b &= b - 1) out [k++] = base | j << 6 | Long.numberOfTrailingZeros (b);
+                } // for
+            } else {
+                char [] a = (char []) chunks [i];
+                for (int j = 0; j < card [i]; j++) out [k++] = base | a [j];
+            } // if
+        } // for
+        return out;
+    } // toArray
+
+    /***************************************************************************
+     * Return the intersection of two bitmaps.
+     * @param a  the first bitmap
+     * @param b  the second bitmap
+     * @return  a AND b
+     */
+    static RoaringBitmap and (RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        for (int i = 0, j = 0; i < a.size && j < b.size; ) {
+            if      (a.keys [i] < b.keys [j]) i++;
+            else if (a.keys [i] > b.keys [j]) j++;
+            else r.combine (a.keys [i], a, i++, b, j++, 0);
+        } // for
+        return r;
+    } // and
+
+    /***************************************************************************
+     * Return the union of two bitmaps.
+     * @param a  the first bitmap
+     * @param b  the second bitmap
+     * @return  a OR b
+     */
+    static RoaringBitmap or (RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys [i] < b.keys [j])) { r.copyChunk (a, i++); }
+            else if (i == a.size || a.keys [i] > b.keys [j])            { r.copyChunk (b, j++); }
+            else r.combine (a.keys [i], a, i++, b, j++, 1);
+        } // while
+        return r;
+    } // or
+
+    /***************************************************************************
+     * Return the values of one bitmap that are not in another.
+     * @param a  the first bitmap
+     * @param b  the second bitmap
+     * @return  a AND NOT b
+     */
+    static RoaringBitmap andNot (RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys [j] < a.keys [i]) j++;
+            if (j < b.size && b.keys [j] == a.keys [i]) r.combine (a.keys [i], a, i, b, j, 2);
+            else                                         r.copyChunk (a, i);
+        } // for
+        return r;
+    } // andNot
+
+    /***************************************************************************
+     * Combine chunk i of a with chunk j of b (0 => and, 1 => or, 2 => and not)
+     * and append the result (if not empty) as chunk hi, in its smaller form.
+     * Two array chunks are merged; AND and AND NOT of an array chunk with a
+     * bitmap chunk probe the bitmap for each value of the array; only the other
+     * cases (a side is a bitmap) work word by word.
+     */
+    private void combine (char hi, RoaringBitmap a, int i, RoaringBitmap b, int j, int op)
+    {
+        Object x = a.chunks [i], y = b.chunks [j];
+        if (x instanceof char [] && y instanceof char []) {
+            merge (hi, (char []) x, a.card [i], (char []) y, b.card [j], op);
+        } else if (x instanceof char [] && op != 1) {
+            probe (hi, (char []) x, a.card [i], (long []) y, op == 0);
+        } else if (y instanceof char [] && op == 0) {
+            probe (hi, (char []) y, b.card [j], (long []) x, true);
+        } else {
+            combine (hi, a.words (i), b.words (j), op);
+        } // if
+    } // combine
+
+    /***************************************************************************
+     * Merge two array chunks (0 => and, 1 => or, 2 => and not) and append the
+     * result (if not empty) as chunk hi.  The merge loops avoid branching on
+     * the values (whose order is unpredictable): each step stores a candidate
+     * and advances the output and the inputs by 0 or 1.
+     */
+    private void merge (char hi, char [] x, int nx, char [] y, int ny, int op)
+    {
+        char [] r = new char [op == 1 ? nx + ny : op == 0 ? Math.min (nx, ny) + 1 : nx];
+        int     p = 0, q = 0, k = 0;
+        if (op == 0) {
+            while (p < nx && q < ny) {
+                char u = x [p], v = y [q];
+                r [k] = u;
+                k += u == v ? 1 : 0;
+                p += u <= v ? 1 : 0;
+                q += v <= u ? 1 : 0;
+            } // while
+        } else if (op == 1) {
+            while (p < nx && q < ny) {
+                char u = x [p], v = y [q];
+                r [k++] = u <= v ? u : v;
+                p += u <= v ? 1 : 0;
+                q += v <= u ? 1 : 0;
+            } // while
+            while (q < ny) r [k++] = y [q++];
+        } else {
+            while (p < nx && q < ny) {
+                char u = x [p], v = y [q];
+                r [k] = u;
+                k += u < v ? 1 : 0;
+                p += u <= v ? 1 : 0;
+                q += v <= u ? 1 : 0;
+            } // while
+        } // if
+        if (op != 0) while (p < nx) r [k++] = x [p++];
+        if (k == 0) return;
+        insertChunk (size, hi, k > ARRAY_MAX ? toWords (r, k) : r, k);
+    } // merge
+
+    /***************************************************************************
+     * Append as chunk hi the values of an array chunk that are (in) or are not
+     * (! in) in a bitmap chunk, if there are any.
+     */
+    private void probe (char hi, char [] x, int n, long [] w, boolean in)
+    {
+        char [] r = new char [n];
+        int     k = 0;
+        for (int p = 0; p < n; p++) if (((w [x [p] >>> 6] & 1L << x [p]) != 0) == in) r [k++] = x [p];
+        if (k > 0) insertChunk (size, hi, r, k);
+    } // probe
+
+    /***************************************************************************
+     * Combine two chunks word by word (0 => and, 1 => or, 2 => and not) and
+     * append the result (if not empty) as chunk hi, in its smaller form.
+     */
+    private void combine (char hi, long [] x, long [] y, int op)
+    {
+        long [] w = new long [1024];
+        int     n = 0;
+        for (int k = 0; k < 1024; k++) {
+            w [k] = op == 0 ? x [k] & y [k] : op == 1 ? x [k] | y [k] : x [k] & ~y [k];
+            n    += Long.bitCount (w [k]);
+        } // for
+        if (n == 0) return;
+        if (n > ARRAY_MAX) { insertChunk (size, hi, w, n); return; }
+
+        char [] a = new char [n];
+        int     p = 0;
+        for (int k = 0; k < 1024; k++) {
+            for (long b = w [k]; b != 0; b &= b - 1) a [p++] = (char) (k << 6 | Long.numberOfTrailingZeros (b));
+        } // for
+        insertChunk (size, hi, a, n);
+    } // combine
+
+    /***************************************************************************
+     * Return chunk i as 1024 words (a copy for array chunks).
+     */
+    private long [] words (int i)
+    {
+        if (chunks [i] instanceof long []) return (long []) chunks [i];
+        return toWords ((char []) chunks [i], card [i]);
+    } // words
+
+    private static long [] toWords (char [] a, int n)
+    {
+        long [] w = new long [1024];
+        for (int k = 0; k < n; k++) w [a [k] >>> 6] |= 1L << a [k];
+        return w;
+    } // toWords
+
+    private void copyChunk (RoaringBitmap src, int i)
+    {
+        Object c = src.chunks [i] instanceof long [] ? ((long []) src.chunks [i]).clone ()
+                                                     : Arrays.copyOf ((char []) src.chunks [i], src.card [i]);
+        insertChunk (size, src.keys [i], c, src.card [i]);
+    } // copyChunk
+
+    private void insertChunk (int i, char hi, Object chunk, int n)
+    {
+        if (size == keys.length) {
+            keys   = Arrays.copyOf (keys, 2 * size);
+            chunks = Arrays.copyOf (chunks, 2 * size);
+            card   = Arrays.copyOf (card, 2 * size);
+        } // if
+        System.arraycopy (keys, i, keys, i + 1, size - i);
+        System.arraycopy (chunks, i, chunks, i + 1, size - i);
+        System.arraycopy (card, i, card, i + 1, size - i);
+        keys [i] = hi; chunks [i] = chunk; card [i] = n;
+        size++;
+    } // insertChunk
+
+    private int find (char hi)
+    {
+        return Arrays.binarySearch (keys, 0, size, hi);
+    } // find
+
+} // RoaringBitmap class
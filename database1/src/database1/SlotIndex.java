@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * @file  SlotIndex.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class is the index of a temporary (result) table.  It maps each key to
+ * the slot of its tuple in the table's storage (a TempList) rather than to the
+ * tuple itself, and reads tuples back from the storage when they are asked
+ * for, so a result spilled to disk holds only its keys and slots in memory.
+ * Like a TreeMap, it keeps the keys in increasing order.
+ * put (key, tuple) requires the tuple to be the last one added to the storage:
+ * the key is mapped to that slot.
+ */
+class SlotIndex
+      extends AbstractMap <KeyType, Comparable []>
+{
+    /** The slot of each key's tuple, in key order.
+     */
+    private final TreeMap <KeyType, Integer> slots = new TreeMap <> ();
+
+    /** The storage the slots refer to.
+     */
+    private final List <Comparable []> tuples;
+
+    /***************************************************************************
+     * Construct an empty index over the given storage.
+     * @param _tuples  the storage of the table
+     */
+    SlotIndex (List <Comparable []> _tuples)
+    {
+        tuples = _tuples;
+    } // constructor
+
+    public int size ()                            { return slots.size (); }
+    public boolean containsKey (Object k)         { return slots.containsKey (k); }
+    public Set <KeyType> keySet ()                { return slots.keySet (); }
+    public void clear ()                          { slots.clear (); }
+
+    public Comparable [] get (Object k)
+    {
+        Integer slot = slots.get (k);
+        return slot == null ? null : tuples.get (slot);
+    } // get
+
+    /***************************************************************************
+     * Map the key to the slot of the last tuple added to the storage.
+     * @param k    the key
+     * @param tup  the tuple (the last one added to the storage)
+     * @return  null (the previous tuple is not read back)
+     */
+    public Comparable [] put (KeyType k, Comparable [] tup)
+    {
+        slots.put (k, tuples.size () - 1);
+        return null;
+    } // put
+
+    /***************************************************************************
+     * Map the given keys to consecutive slots, building the index bottom-up.
+     * The index must be empty.
+     * @param keys   the keys, in increasing order
+     * @param first  the slot of the first key's tuple
+     */
+    void putSorted (List <KeyType> keys, int first)
+    {
+        slots.putAll (new SortedEntries <> (keys, new AbstractList <Integer> () {
+            public Integer get (int i) { return first + i; }
+            public int size ()         { return keys.size (); }
+        }));
+    } // putSorted
+
+    public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <KeyType, Comparable []>> () {
+            public int size () { return slots.size (); }
+            public Iterator <Map.Entry <KeyType, Comparable []>> iterator ()
+            {
+                Iterator <Map.Entry <KeyType, Integer>> it = slots.entrySet ().iterator ();
+                return new Iterator <Map.Entry <KeyType, Comparable []>> () {
+                    public boolean hasNext () { return it.hasNext (); }
+                    public Map.Entry <KeyType, Comparable []> next ()
+                    {
+                        Map.Entry <KeyType, Integer> e = it.next ();
+                        return new SimpleImmutableEntry <> (e.getKey (), tuples.get (e.getValue ()));
+                    } // next
+                };
+            } // iterator
+        };
+    } // entrySet
+
+} // SlotIndex class
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * @file  SortedEntries.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class presents parallel lists of keys (in increasing order, without
+ * duplicates) and values as a read-only SortedMap.  Passed to TreeMap.putAll on
+ * an empty TreeMap, it lets the TreeMap build its tree bottom-up in linear time
+ * (TreeMap.buildFromSorted) instead of inserting and rebalancing entry by entry.
+ * Lookups and the sub-map views (subMap, headMap, tailMap) use binary search;
+ * a view covers a range of positions in the lists, and bounds beyond a view's
+ * range are clamped to it.
+ * @param <K>  the key type
+ * @param <V>  the value type
+ */
+class SortedEntries <K extends Comparable <? super K>, V>
+      extends AbstractMap <K, V>
+      implements SortedMap <K, V>
+{
+    private final List <K> keys;
+    private final List <V> values;
+
+    /** The positions [lo, hi) of the lists this map covers.
+     */
+    private final int lo, hi;
+
+    /***************************************************************************
+     * Construct a sorted map view of the given keys and values.
+     * @param _keys    the keys, in increasing (natural) order
+     * @param _values  the values, in the same order
+     */
+    SortedEntries (List <K> _keys, List <V> _values)
+    {
+        this (_keys, _values, 0, _keys.size ());
+    } // constructor
+
+    private SortedEntries (List <K> _keys, List <V> _values, int _lo, int _hi)
+    {
+        keys   = _keys;
+        values = _values;
+        lo     = _lo;
+        hi     = _hi;
+    } // constructor
+
+    public int size ()                            { return hi - lo; }
+    public Comparator <? super K> comparator ()   { return null; }             // natural order
+
+    public boolean containsKey (Object k)         { return find (k) >= 0; }
+
+    public V get (Object k)
+    {
+        int i = find (k);
+        return i >= 0 ? values.get (i) : null;
+    } // get
+
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <K, V>> () {
+            public int size () { return hi - lo; }
+            public Iterator <Map.Entry <K, V>> iterator ()
+            {
+                return new Iterator <Map.Entry <K, V>> () {
+                    private int i = lo;
+                    public boolean hasNext ()         { return i < hi; }
+                    public Map.Entry <K, V> next ()
+                    {
+                        if (i >= hi) throw new NoSuchElementException ();
+                        Map.Entry <K, V> e = new SimpleImmutableEntry <> (keys.get (i), values.get (i));
+                        i++;
+                        return e;
+                    } // next
+                };
+            } // iterator
+        };
+    } // entrySet
+
+    public K firstKey ()
+    {
+        if (lo == hi) throw new NoSuchElementException ();
+        return keys.get (lo);
+    } // firstKey
+
+    public K lastKey ()
+    {
+        if (lo == hi) throw new NoSuchElementException ();
+        return keys.get (hi - 1);
+    } // lastKey
+
+    public SortedMap <K, V> subMap (K from, K to)
+    {
+        if (from.compareTo (to) > 0) throw new IllegalArgumentException ("SortedEntries.subMap: from > to");
+        int i = bound (from);
+        return new SortedEntries <> (keys, values, i, Math.max (i, bound (to)));
+    } // subMap
+
+    public SortedMap <K, V> headMap (K to)        { return new SortedEntries <> (keys, values, lo, bound (to)); }
+    public SortedMap <K, V> tailMap (K from)      { return new SortedEntries <> (keys, values, bound (from), hi); }
+
+    /***************************************************************************
+     * Return the position of the first key in range that is >= k (hi if none).
+     */
+    private int bound (K k)
+    {
+        int i = Collections.binarySearch (keys.subList (lo, hi), k);
+        return lo + (i >= 0 ? i : -i - 1);
+    } // bound
+
+    /***************************************************************************
+     * Return the position of key k in range, or -1 if it is not there.
+     */
+    @SuppressWarnings("unchecked")
+    private int find (Object k)
+    {
+        int i = Collections.binarySearch (keys.subList (lo, hi), (K) k);
+        return i >= 0 ? lo + i : -1;
+    } // find
+
+} // SortedEntries class
@@ -7,13 +7,15 @@
 
 package database1;
 
-import java.io.Serializable;
+import java.io.*;
 
 import static java.lang.Boolean.*;
 import static java.lang.System.out;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
@@ -31,9 +33,14 @@ public class Table
      */
     private static final boolean DEBUG = true;
 
-    /** Counter for naming temporary tables.
+    /** Counter for naming temporary tables (atomic, since tables may be read
+     *  from several threads at once).
      */
-    private static int count = 0;
+    private static final AtomicInteger count = new AtomicInteger ();
+
+    /** Counter for numbering tables (see cacheId); atomic, like count.
+     */
+    private static final AtomicInteger tables = new AtomicInteger ();
 
     /** Table name.
      */
@@ -62,6 +69,55 @@ public class Table
      */
     private final Map <KeyType, Comparable []> index;  
 
+    /** Statistics on the tuples (row count and per-column statistics); for a
+     *  temporary table, null until first asked for (see getStats).
+     */
+    private TableStats stats;
+
+    /** Maximum number of compiled conditions cached per table.
+     */
+    private static final int PLAN_CACHE = Integer.getInteger ("database1.planCache", 256);
+
+    /** Cache of compiled selection conditions, keyed by condition text.
+     */
+    private final Map <String, Condition> plans = new LruCache <> (PLAN_CACHE);
+
+    /** Whether selections scanning a stored table run on column batches (see
+     *  ColumnBatch).  May be set with -Ddatabase1.vectorize=true.
+     */
+    private static boolean vectorized = Boolean.getBoolean ("database1.vectorize");
+
+    /** Number of this table (distinguishes tables with the same name).
+     */
+    private final int id = tables.getAndIncrement ();
+
+    /** Version of the table's contents, bumped by every insert (see ResultCache);
+     *  volatile since cacheId may read it in a thread other than the writer's.
+     */
+    private volatile long version;
+
+    /** Bloom filter on the primary key (rebuilt larger when full).
+     */
+    private BloomFilter keyBloom = new BloomFilter (1024);
+
+    /** Bloom filters on chosen (join) columns, by column position (see addBloom).
+     */
+    private final Map <Integer, BloomFilter> colBloom = new HashMap <> ();
+
+    /** Counters for the operations on and storage of this table (see Metrics).
+     */
+    private final Metrics metrics;
+
+    /** Bitmap indexes on low-cardinality columns, by column position (see
+     *  addBitmapIndex).
+     */
+    private final Map <Integer, BitmapIndex> bitmaps = new HashMap <> ();
+
+    /** Whether the tuples were stored in a requested order (see orderBy), which
+     *  scan () then follows instead of the key order.
+     */
+    private boolean ordered;
+
     /***************************************************************************
      * Construct an empty table from the meta-data specifications.
      * @param _name       the name of the relation
@@ -70,14 +126,32 @@ public class Table
      * @param _key        the primary key
      */  
     public Table (String _name, String [] _attribute, Class [] _domain, String [] _key)
+    {
+        this (_name, _attribute, _domain, _key, false);
+    } // Table
+
+    /***************************************************************************
+     * Construct an empty temporary (result) table from the meta-data
+     * specifications.  Its tuples are kept in memory up to the TempList budget
+     * and spilled to a temporary file beyond that; its index maps keys to slots
+     * (see SlotIndex), so a spilled result does not keep its tuples on the heap.
+     * Call close () to release them.
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param temporary   whether the table is temporary (otherwise as above)
+     */
+    Table (String _name, String [] _attribute, Class [] _domain, String [] _key, boolean temporary)
     {
         name      = _name;
         attribute = _attribute;
         domain    = _domain;
         key       = _key;
-//        tuples    = new ArrayList <> ();                // also try FileList, see below
-        tuples    = new FileList (this, tupleSize ());
-        index     = new TreeMap <> ();                  // also try BPTreeMap, LinHash or ExtHash
+        metrics   = Metrics.forTable (name, temporary);
+        tuples    = temporary ? new TempList (this, tupleSize ()) : new FileList (this, tupleSize ());
+        index     = temporary ? new SlotIndex (tuples) : new TreeMap <> ();
+        stats     = temporary ? null : new TableStats (attribute);
     } // Table
 
     /***************************************************************************
@@ -90,7 +164,7 @@ public class Table
     {
         this (name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "));
 
-        out.println ("DDL> create table " + name + " (" + attributes + ")");
+        if (Log.enabled (Log.INFO)) Log.write ("DDL> create table " + name + " (" + attributes + ")");
     } // Table
 
     /***************************************************************************
@@ -105,7 +179,8 @@ public class Table
 
     /***************************************************************************
      * Project the tuples onto a lower dimension by keeping only the given attributes.
-     * Check whether the original key is included in the projection.
+     * Check whether the original key is included in the projection; if it is not,
+     * all the projected attributes form the key and duplicates are eliminated.
      * #usage movie.project ("title year studioNo")
      * @param attributeList  the attributes to project onto
      * @return  the table consisting of projected tuples
@@ -113,7 +188,8 @@ public class Table
      */
     public Table project (String attributeList)
     {
-        out.println ("RA> " + name + ".project (" + attributeList + ")");
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".project (" + attributeList + ")");
+        long start = System.nanoTime ();
 
         String [] pAttribute = attributeList.split (" ");
         int []    colPos     = match (pAttribute);
@@ -140,25 +216,16 @@ public class Table
 			newKey = pAttribute;
 		}
         
-		Table result = new Table(name + count++, pAttribute, colDomain, newKey);
-
-		Set<KeyType> testKey = this.index.keySet();  
-		Iterator itTable1 = testKey.iterator();    
-		KeyType tempKey = null;
-		Comparable[] tempTup = null;
-		while (itTable1.hasNext()) {
-			tempKey = (KeyType) itTable1.next();
-			if (!result.index.containsKey(tempKey)) {  
-				tempTup = this.index.get(tempKey);
-				result.tuples.add(extractTup(tempTup, colPos));
-				Comparable[] keyVal = new Comparable[newKey.length];
-				for (int j = 0; j < keyVal.length; j++)
-					keyVal[j] = tempTup[colPos[j]];
-				result.index.put(new KeyType(keyVal), tempTup);  
-			}
-		}
+		Table result = new Table(name + count.getAndIncrement (), pAttribute, colDomain, newKey, true);
 
-        return result;
+		// when the key is dropped, a distinct stage removes duplicate projected tuples
+		TupleSet distinct = newKey == pAttribute ? new TupleSet (index.size ()) : null;
+		for (Comparable [] tup : index.values ()) {
+			Comparable [] pTup = extractTup (tup, colPos);
+			if (distinct == null || distinct.add (pTup)) result.append (pTup);
+		} // for
+
+        return done ("project", start, index.size (), result);
     } // project
 
     /***************************************************************************
@@ -172,33 +239,198 @@ public class Table
      */
     public Table select (String condition)
     {
-        out.println ("RA> " + name + ".select (" + condition + ")");
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".select (" + condition + ")");
+        long start = System.nanoTime ();
 
-//        String [] postfix = { "year", "1980", "!=" };      // FIX: delete after impl
-        String [] postfix = infix2postfix (condition);           // FIX: uncomment after impl
-        Table     result  = new Table (name + count++, attribute, domain, key);
+        String cacheKey = ResultCache.enabled () ? cacheId () + ".select (" + Plan.normalize (condition) + ")" : null;
+        Table  hit      = ResultCache.get (cacheKey);
+        if (hit != null) return done ("select", start, index.size (), hit);
 
-        Set<KeyType> testKey = this.index.keySet();
-    	Iterator itTable1 = testKey.iterator();
-    	KeyType tempKey = null;
-    	Comparable[] tempTup = null;
-    	while(itTable1.hasNext())
-    	{
-    		tempKey= (KeyType)itTable1.next();
-    		tempTup = this.index.get(tempKey);
-    		if (evalTup (postfix, tempTup)) 
-    		{	
-    			result.tuples.add(tempTup);
-    			result.index.put(tempKey,tempTup);
-    		}
-    		
-    	}
+        return ResultCache.put (cacheKey, select (compile (condition), null));
+    } // select
 
-        return result;
+    /***************************************************************************
+     * Prepare a selection whose condition may have parameters "?" for values
+     * bound when it is executed.  The condition is parsed and compiled once;
+     * compiled conditions are cached by text (see database1.planCache).
+     * #usage movie.prepare ("title == ? & year > ?").execute ("Star_Wars", 1970)
+     * @param condition  the check condition for tuples, with parameters
+     * @return  the prepared selection
+     */
+    public PreparedSelect prepare (String condition)
+    {
+        return new PreparedSelect (this, condition, compile (condition));
+    } // prepare
+
+    /***************************************************************************
+     * Select the tuples satisfying a compiled condition.
+     * @param cond    the compiled condition
+     * @param params  the parameter values (null if none)
+     * @return  the table consisting of tuples satisfying the condition
+     */
+    Table select (Condition cond, Comparable [] params)
+    {
+        long  start  = System.nanoTime ();
+        Table result = new Table (name + count.getAndIncrement (), attribute, domain, key, true);
+        if (selectBitmaps (cond, params, result)) return done ("select", start, index.size (), result);
+        if (selectBlocks (cond, params, result))  return done ("select", start, index.size (), result);
+        if (selectBatches (cond, params, result)) return done ("select", start, index.size (), result);
+
+        for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+            if (cond.eval (e.getValue (), params)) result.append (e.getKey (), e.getValue ());
+        } // for
+        return done ("select", start, index.size (), result);
     } // select
 
+    /***************************************************************************
+     * Select using the bitmap indexes: AND / OR the bitmaps for the condition's
+     * comparisons on indexed columns and fetch only the candidate records (by
+     * slot, reading each data file block holding any of them once), checking
+     * them unless the bitmaps answer the condition exactly.
+     * This is done only when some record is ruled out and every record stored
+     * is current.  Matching tuples are added in key order, as by the index.
+     * @param cond    the compiled condition
+     * @param params  the parameter values (null if none)
+     * @param result  the table to add the matching tuples to
+     * @return  whether the selection was done this way
+     */
+    private boolean selectBitmaps (Condition cond, Comparable [] params, Table result)
+    {
+        if (bitmaps.isEmpty () || tuples.size () != index.size ()) return false;
+        RoaringBitmap universe   = bitmaps.values ().iterator ().next ().all ();
+        RoaringBitmap candidates = cond.candidates (bitmaps, universe, params);
+        if (candidates == null || candidates.cardinality () == tuples.size ()) return false;
+
+        boolean exact = cond.exact (bitmaps);
+        TreeMap <KeyType, Comparable []> matches = new TreeMap <> ();
+        ZoneMap zones = tuples instanceof FileList ? ((FileList) tuples).zones () : null;
+        List <Comparable []> block = null;
+        int                  b     = -1;
+        for (int slot : candidates.toArray ()) {
+            Comparable [] tup;
+            if (zones == null) {
+                tup = tuples.get (slot);
+            } else {                                          // read each block holding candidates once
+                int bs = zones.blockSize ();
+                if (slot / bs != b) block = ((FileList) tuples).getBlock (b = slot / bs);
+                tup = block.get (slot - b * bs);
+            } // if
+            if (exact || cond.eval (tup, params)) matches.put (keyOf (tup), tup);
+        } // for
+        for (Map.Entry <KeyType, Comparable []> e : matches.entrySet ()) result.append (e.getKey (), e.getValue ());
+        return true;
+    } // selectBitmaps
+
+    /***************************************************************************
+     * Select using the zone map of the data file: read only the blocks whose
+     * min/max ranges may satisfy the condition.  This is done only when some
+     * block can be skipped and every record in the file is current (no key was
+     * inserted twice).  Matching tuples are added in key order, as by the index.
+     * @param cond    the compiled condition
+     * @param params  the parameter values (null if none)
+     * @param result  the table to add the matching tuples to
+     * @return  whether the selection was done this way
+     */
+    private boolean selectBlocks (Condition cond, Comparable [] params, Table result)
+    {
+        if (! (tuples instanceof FileList) || tuples.size () != index.size ()) return false;
+        ZoneMap zones = ((FileList) tuples).zones ();
+        if (zones == null) return false;
+
+        List <Integer> blocks = new ArrayList <> ();
+        for (int b = 0; b < zones.blocks (); b++) if (zones.mayMatch (b, cond, params)) blocks.add (b);
+        if (blocks.size () == zones.blocks ()) return false;
+
+        TreeMap <KeyType, Comparable []> matches = new TreeMap <> ();
+        for (int b : blocks) {
+            for (Comparable [] tup : ((FileList) tuples).getBlock (b)) {
+                if (cond.eval (tup, params)) matches.put (keyOf (tup), tup);
+            } // for
+        } // for
+        for (Map.Entry <KeyType, Comparable []> e : matches.entrySet ()) result.append (e.getKey (), e.getValue ());
+        return true;
+    } // selectBlocks
+
+    /***************************************************************************
+     * Select in vectorized mode: read the data file in column batches and check
+     * the condition a column at a time (see Condition.filter), unpacking only
+     * the matching records.  This is done only when the condition is
+     * vectorizable and every record in the file is current.  Matching tuples
+     * are added in key order, as by the index.
+     * @param cond    the compiled condition
+     * @param params  the parameter values (null if none)
+     * @param result  the table to add the matching tuples to
+     * @return  whether the selection was done this way
+     */
+    private boolean selectBatches (Condition cond, Comparable [] params, Table result)
+    {
+        FileList list = vectorized ? batchSource () : null;
+        if (list == null || ! cond.vectorizable (domain)) return false;
+
+        TreeMap <KeyType, Comparable []> matches = new TreeMap <> ();
+        ColumnBatch batch = new ColumnBatch (domain);
+        for (int from = 0, n; (n = batch.load (list, from)) > 0; from += n) {
+            cond.filter (batch, domain, params);
+            for (int i = 0; i < batch.size (); i++) {
+                Comparable [] tup = new Comparable [domain.length];
+                for (int j = 0; j < tup.length; j++) tup [j] = batch.value (batch.row (i), j);
+                matches.put (keyOf (tup), tup);
+            } // for
+        } // for
+        for (Map.Entry <KeyType, Comparable []> e : matches.entrySet ()) result.append (e.getKey (), e.getValue ());
+        return true;
+    } // selectBatches
+
+    /***************************************************************************
+     * Return the data file to scan in column batches, or null unless the tuples
+     * are stored in a FileList holding only current records.
+     * @return  the file list, or null
+     */
+    FileList batchSource ()
+    {
+        if (! (tuples instanceof FileList) || tuples.size () != index.size ()) return null;
+        return (FileList) tuples;
+    } // batchSource
+
+    /***************************************************************************
+     * Return whether vectorized mode is on (see setVectorized).
+     * @return  whether selections run on column batches
+     */
+    static boolean vectorized ()
+    {
+        return vectorized;
+    } // vectorized
+
+    /***************************************************************************
+     * Set whether selections scanning a stored table run on column batches
+     * (vectorized mode).
+     * @param on  whether to vectorize
+     */
+    public static void setVectorized (boolean on)
+    {
+        vectorized = on;
+    } // setVectorized
+
+    /***************************************************************************
+     * Return the compiled form of a condition, from the cache if possible.
+     * @param condition  the condition text
+     * @return  the compiled condition
+     */
+    private synchronized Condition compile (String condition)
+    {
+        Condition cond = plans.get (condition);
+        if (cond == null) plans.put (condition, cond = Condition.compile (condition, attribute, domain));
+        return cond;
+    } // compile
+
     /***************************************************************************
      * Union this table and table2.  Check that the two tables are compatible.
+     * A tuple of table2 is dropped if this table has a tuple with the same key
+     * (and hence any tuple equal to it).  When both tables are indexed on the
+     * same key, the two ordered indexes are merged in lockstep.  When this key
+     * includes table2's key, each tuple of table2 probes this index (skipping
+     * definite misses by the key's Bloom filter); otherwise the keys of this
+     * table are hashed into a TupleSet and table2 probes it.
      * #usage movie.union (show)
      * @param table2  the rhs table in the union operation
      * @return  the table representing the union (this U table2)
@@ -206,49 +438,69 @@ public class Table
      */
     public Table union (Table table2)
     {
-        out.println ("RA> " + name + ".union (" + table2.name + ")");
-
-        Table result = new Table (name + count++, attribute, domain, key);
-        
-		Comparable[] tempTup = null;
-		KeyType tempKey = null;
-		Comparable[] keyVal = new Comparable[key.length];
-
-		Set<KeyType> testKey = this.index.keySet();
-		Iterator itTable1 = testKey.iterator();
-		while (itTable1.hasNext()) {
-			tempKey = (KeyType) itTable1.next();
-			tempTup = this.index.get(tempKey);
-			result.tuples.add(tempTup);
-			result.index.put(tempKey, tempTup);
-
-		}// while
-
-		if (compatible(table2)) { 
-			Set<KeyType> testKey2 = table2.index.keySet();
-			Iterator itTable2 = testKey2.iterator();
-
-			while (itTable2.hasNext()) {
-				tempKey = (KeyType) itTable2.next();
-				if (!result.index.containsKey(tempKey)) {
-					tempTup = table2.index.get(tempKey);
-					result.tuples.add(tempTup);
-					result.index.put(tempKey, tempTup);
-				}
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".union (" + table2.name + ")");
+        long start = System.nanoTime ();
+
+        Table result = new Table (name + count.getAndIncrement (), attribute, domain, key, true);
+
+        if (! compatible (table2)) {
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                result.append (e.getKey (), e.getValue ());
+            } // for
+
+        } else if (Arrays.equals (key, table2.key) && Arrays.equals (domain, table2.domain)) {
+            // same key order on both sides: merge the two indexes
+            Iterator <Map.Entry <KeyType, Comparable []>> it1 = index.entrySet ().iterator ();
+            Iterator <Map.Entry <KeyType, Comparable []>> it2 = table2.index.entrySet ().iterator ();
+            Map.Entry <KeyType, Comparable []> e1 = it1.hasNext () ? it1.next () : null;
+            Map.Entry <KeyType, Comparable []> e2 = it2.hasNext () ? it2.next () : null;
+            while (e1 != null || e2 != null) {
+                int c = e1 == null ? 1 : e2 == null ? -1 : e1.getKey ().compareTo (e2.getKey ());
+                Map.Entry <KeyType, Comparable []> e = c <= 0 ? e1 : e2;
+                result.append (e.getKey (), e.getValue ());
+                if (c <= 0) e1 = it1.hasNext () ? it1.next () : null;
+                if (c >= 0) e2 = it2.hasNext () ? it2.next () : null;
+            } // while
+
+        } else if (Arrays.asList (key).containsAll (Arrays.asList (table2.key))) {
+            // the tuples of table2 differ in this key: probe this index
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                result.append (e.getKey (), e.getValue ());
+            } // for
+            int [] cols2 = table2.match (key);
+            for (Comparable [] tup : table2.index.values ()) {
+                boolean       maybe  = keyBloom.mightContain (KeyType.hashOf (tup, cols2));
+                KeyType       tupKey = KeyType.of (extractTup (tup, cols2));
+                if (! maybe || ! hasKey (tupKey)) result.append (tupKey, tup);
+            } // for
 
-			}// while
-
-		}// if
-        
-        
+        } else {
+            // hash the keys of this table
+            int []   cols = match (key);
+            TupleSet keys = new TupleSet (index.size ());
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                keys.add (extractTup (e.getValue (), cols));
+                result.append (e.getKey (), e.getValue ());
+            } // for
+            int [] cols2 = table2.match (key);
+            for (Comparable [] tup : table2.index.values ()) {
+                Comparable [] keyVal = extractTup (tup, cols2);
+                if (keys.add (keyVal)) {
+                    result.append (KeyType.of (keyVal), tup);
+                } // if
+            } // for
+        } // if
 
-        return result;
-        
+        return done ("union", start, index.size () + table2.index.size (), result);
     } // union
 
     /***************************************************************************
      * Take the difference of this table and table2.  Check that the two tables
-     * are compatible.
+     * are compatible.  Tuples are compared by content.  When both tables are
+     * indexed on the same key, their indexes are merged in key order.  Otherwise,
+     * if table2 is the smaller, a TupleSet is built over it and probed; if not,
+     * each tuple looks up table2's index by table2's key, skipping definite
+     * misses by the key's Bloom filter.
      * #usage movie.minus (show)
      * @param table2  the rhs table in the minus operation
      * @return  the table representing the difference (this - table2)
@@ -256,32 +508,55 @@ public class Table
      */
     public Table minus (Table table2)
     {
-        out.println ("RA> " + name + ".minus (" + table2.name + ")");
-
-        Table result = new Table (name + count++, attribute, domain, key);
-        
-        Comparable [] tempTup = null;
-        KeyType tempKey = null;
-        
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".minus (" + table2.name + ")");
+        long start = System.nanoTime ();
+
+        Table result = new Table (name + count.getAndIncrement (), attribute, domain, key, true);
+
+        if (! compatible (table2) || ! Arrays.equals (domain, table2.domain)) {
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                result.append (e.getKey (), e.getValue ());
+            } // for
+
+        } else if (Arrays.equals (key, table2.key)) {
+            // same key order on both sides: merge the two indexes
+            Iterator <Map.Entry <KeyType, Comparable []>> it2 = table2.index.entrySet ().iterator ();
+            Map.Entry <KeyType, Comparable []> e2 = it2.hasNext () ? it2.next () : null;
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                while (e2 != null && e2.getKey ().compareTo (e.getKey ()) < 0) {
+                    e2 = it2.hasNext () ? it2.next () : null;
+                } // while
+                boolean found = e2 != null && e2.getKey ().compareTo (e.getKey ()) == 0 &&
+                                TupleSet.same (e.getValue (), e2.getValue ());
+                if (! found) {
+                    result.append (e.getKey (), e.getValue ());
+                } // if
+            } // for
+
+        } else if (table2.index.size () <= index.size ()) {
+            // hash the smaller side
+            TupleSet common = new TupleSet (table2.index.size ());
+            for (Comparable [] tup : table2.index.values ()) common.add (tup);
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                if (! common.contains (e.getValue ())) {
+                    result.append (e.getKey (), e.getValue ());
+                } // if
+            } // for
 
-        	Set<KeyType> testKey = this.index.keySet();
-        	Iterator itTable1 = testKey.iterator();
-        	
-        	while(itTable1.hasNext())
-        	{
-        		tempKey= (KeyType)itTable1.next();
-        		tempTup = this.index.get(tempKey);
-        		if(!table2.index.containsValue(tempTup))
-        		{
-        		 result.tuples.add(tempTup);
-        		 result.index.put(tempKey,tempTup);
-        		}
-        		
-        	}//while
-        	//project#2 end
+        } else {
+            // probe table2's index, unless its Bloom filter rules the key out
+            int [] cols2 = match (table2.key);
+            for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+                Comparable [] tup   = e.getValue ();
+                boolean       found = table2.keyBloom.mightContain (KeyType.hashOf (tup, cols2)) &&
+                                      TupleSet.same (table2.lookup (KeyType.of (extractTup (tup, cols2))), tup);
+                if (! found) {
+                    result.append (e.getKey (), e.getValue ());
+                } // if
+            } // for
+        } // if
 
-        
-        return result;
+        return done ("minus", start, index.size () + table2.index.size (), result);
     } // minus
 
     /***************************************************************************
@@ -292,6 +567,8 @@ public class Table
      * (e.g., prefix the second occurrence with "s_").
      * Caveat: the key parameter assumes joining the table with the foreign key
      * (this) to the table containing the primary key (table2).
+     * An equi-join on a single pair of attributes (e.g., "studioName == name")
+     * is evaluated as a radix-partitioned parallel hash join (see ParallelHashJoin).
      * #usage movie.join ("studioNo == name", studio);
      * #usage movieStar.join ("name == s.name", starsIn);
      * @param condition  the join condition for tuples
@@ -300,7 +577,8 @@ public class Table
      */
     public Table join (String condition, Table table2)  
     {
-    	out.println ("RA> " + name + ".join (" + condition + ", " + table2.name + ")");
+    	if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".join (" + condition + ", " + table2.name + ")");
+        long start = System.nanoTime ();
     	
         int flength = this.attribute.length;
         int slength = table2.attribute.length;
@@ -323,6 +601,11 @@ public class Table
 			}
 		}
           
+        String cacheKey = ResultCache.enabled () ? cacheId () + ".join (" + condition + ", " + table2.cacheId () + ")"
+                                                 : null;
+        Table  hit      = ResultCache.get (cacheKey);
+        if (hit != null) return done ("join", start, index.size () + table2.index.size (), hit);
+
         System.arraycopy(attribute, 0, rAttribute, 0, flength);   
         System.arraycopy(table2.attribute,0,rAttribute,flength,slength);
         
@@ -375,7 +658,27 @@ public class Table
 
         }
         
-        Table result = new Table (name + count++, rAttribute, rDomain, newKey);
+        Table result = new Table (name + count.getAndIncrement (), rAttribute, rDomain, newKey, true);
+
+        int lCol = result.columnPos (foreignKey);
+        int rCol = result.columnPos (primaryKey);
+        if (postfix.length == 3 && postfix [2].equals ("==") && lCol != -1 && rCol != -1 &&
+            (lCol < flength) != (rCol < flength)) {
+            // equi-join: radix-partitioned parallel hash join
+            if (lCol >= flength) { int t = lCol; lCol = rCol; rCol = t; }
+            Collection <Comparable []> left = index.values ();
+            if (table2.hasBloom (rCol - flength)) {
+                // drop the tuples whose join value table2 definitely lacks
+                left = new ArrayList <> ();
+                for (Comparable [] tup : index.values ()) {
+                    if (table2.mayContain (rCol - flength, tup [lCol])) left.add (tup);
+                } // for
+            } // if
+            result.appendRuns (ParallelHashJoin.join (left, lCol, table2.index.values (), rCol - flength,
+                                                      result.match (result.key)));
+            return done ("join", start, index.size () + table2.index.size (), ResultCache.put (cacheKey, result));
+        } // if
+
         //project#2 begin
         
         Comparable [] tempTupT = null;
@@ -402,20 +705,75 @@ public class Table
     		     System.arraycopy(tempTupU,0,tempTup,flength,slength);
         		if(result.evalTup(postfix,tempTup))
         		{	
-        			result.tuples.add(tempTup);
-        			result.index.put(new KeyType(newKey),tempTup);
+        			result.append (result.keyOf(tempTup), tempTup);
         		}
         		 
         	}//while
     		itTable2=testKey2.iterator(); 
     	}//while
         //project#2 end
-             //-----------------\\ 
-            // TO BE IMPLEMENTED \\
-           //---------------------\\ 
-        return result;
+        return done ("join", start, index.size () + table2.index.size (), ResultCache.put (cacheKey, result));
     } // join
 
+    /***************************************************************************
+     * Sort the tuples of this table on the given attributes, using an external
+     * merge sort so that tables larger than memory can be sorted.  The result
+     * keeps the requested order for print and for scan () (and so for operator
+     * pipelines and materialize); its other operations (select, union, join,
+     * ...) still go through its index in primary key order, like any table's.
+     * To keep the order, chain operators onto its scan ().
+     * #usage movie.orderBy ("year length")
+     * #usage movie.orderBy ("year length", true, false)
+     * @param attributes  the attributes to sort on (major to minor)
+     * @param descending  for each attribute, whether to sort it in descending
+     *                    order (missing flags mean ascending)
+     * @return  the table consisting of the sorted tuples
+     */
+    public Table orderBy (String attributes, boolean... descending)
+    {
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".orderBy (" + attributes + ")");
+        long start = System.nanoTime ();
+
+        int []     cols = match (attributes.split (" "));
+        boolean [] desc = Arrays.copyOf (descending, cols.length);
+        Table    result = new Table (name + count.getAndIncrement (), attribute, domain, key, true);
+
+        new ExternalSort (this, cols, desc).sort (index.values ().iterator (), result);
+        result.ordered = true;
+        return done ("orderBy", start, index.size (), result);
+    } // orderBy
+
+    /***************************************************************************
+     * Group the tuples of this table on the given attributes and compute the
+     * given aggregates for each group in one pass (see HashAggregate).  The
+     * aggregates are count(*), count(a), sum(a), avg(a), min(a) and max(a);
+     * their result attributes are named count and function_a (e.g., sum_length).
+     * The grouping attributes form the key of the result.
+     * #usage movie.groupBy ("studioName", "count(*) sum(length) max(year)")
+     * @param groupAttributes  the attributes to group on (may be empty)
+     * @param aggregates       the aggregates to compute
+     * @return  the table consisting of one tuple per group
+     */
+    public Table groupBy (String groupAttributes, String aggregates)
+    {
+        if (Log.enabled (Log.INFO)) Log.write ("RA> " + name + ".groupBy (" + groupAttributes + ", " + aggregates + ")");
+        long start = System.nanoTime ();
+
+        String cacheKey = ResultCache.enabled () ? cacheId () + ".groupBy (" + groupAttributes.trim () + ", " +
+                                                   aggregates.trim () + ")" : null;
+        Table  hit      = ResultCache.get (cacheKey);
+        if (hit != null) return done ("groupBy", start, index.size (), hit);
+
+        String []     gAttribute = groupAttributes.trim ().isEmpty () ? new String [0]
+                                                                      : groupAttributes.trim ().split (" ");
+        HashAggregate agg        = new HashAggregate (this, attribute, domain, gAttribute,
+                                                      aggregates.trim ().split (" +"));
+        Table         result     = new Table (name + count.getAndIncrement (), agg.attribute, agg.domain, gAttribute, true);
+
+        agg.aggregate (index.values ().iterator (), result);
+        return done ("groupBy", start, index.size (), ResultCache.put (cacheKey, result));
+    } // groupBy
+
     /***************************************************************************
      * Insert a tuple to the table.
      * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
@@ -424,20 +782,465 @@ public class Table
      */
     public boolean insert (Comparable [] tup)
     {
-        out.println ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
+        if (Log.enabled (Log.DEBUG)) Log.write ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
+        long    start = System.nanoTime ();
+        boolean done  = false;
 
         if (typeCheck (tup, domain)) {
-            tuples.add (tup);
-            Comparable [] keyVal = new Comparable [key.length];
-            int []        cols   = match (key);
-            for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
-            index.put (new KeyType (keyVal), tup);
-            return true;
-        } else {
-            return false;
+            KeyType tupKey = keyOf (tup);
+            if (keyBloom.mightContain (tupKey.hashCode ()) && hasKey (tupKey)) {
+                if (Log.enabled (Log.DEBUG)) Log.write ("Table.insert: duplicate key " + tupKey);
+            } else {
+                append (tupKey, tup);
+                done = true;
+            } // if
         } // if
+        record ("insert", start, 1, done ? 1 : 0);
+        return done;
     } // insert
 
+    /***************************************************************************
+     * Bulk load the tuples in a delimited text file (".tsv" => tab separated,
+     * otherwise comma separated) into the table.  Fields are converted to the
+     * attribute domains by a streaming reader, the tuples are sorted on the
+     * primary key with an external sort (dropping all but the first tuple for a
+     * repeated key), and the records are written sequentially as they come out
+     * of the merge.  Loading into an empty (base) table builds the index
+     * bottom-up from the sorted keys in one pass; otherwise tuples whose keys
+     * are already present are skipped.
+     * #usage movie.load ("movie.csv", true)
+     * @param fileName  the name of the file to load
+     * @param header    whether the first line is a header (skipped)
+     * @return  the number of tuples loaded
+     */
+    public int load (String fileName, boolean header)
+    {
+        if (Log.enabled (Log.INFO)) Log.write ("DML> load " + fileName + " into " + name);
+        long start = System.nanoTime ();
+
+        char       delimiter = fileName.toLowerCase ().endsWith (".tsv") ? '\t' : ',';
+        int []     cols      = match (key);
+        LoadSink   sink      = new LoadSink (index.isEmpty () && index instanceof TreeMap);
+        try (DelimitedReader reader = new DelimitedReader (
+                 new InputStreamReader (new FileInputStream (fileName), StandardCharsets.UTF_8), delimiter, domain, header)) {
+            new ExternalSort (this, cols, new boolean [cols.length]).sort (reader, sink);
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("Table.load: unable to read " + fileName, ex);
+        } // try
+        sink.finish ();
+        record ("load", start, sink.read, sink.added);
+        return sink.added;
+    } // load
+
+    /***************************************************************************
+     * Receive the sorted tuples of a load as they come out of the merge.  For a
+     * non-empty table, each tuple with a new key is appended at once.  For an
+     * empty table, the records are written a batch at a time as they arrive and
+     * the statistics and bitmap indexes are updated; only the keys and the
+     * (indexed) tuples are kept, to build the index bottom-up at the end (the
+     * index holds every tuple in any case).
+     */
+    private class LoadSink
+            implements ExternalSort.Sink
+    {
+        private static final int BATCH = 1024;
+
+        private final boolean              bulk;
+        private final List <KeyType>       keys  = new ArrayList <> ();
+        private final List <Comparable []> rows  = new ArrayList <> ();
+        private final List <Comparable []> batch = new ArrayList <> (BATCH);
+        private KeyType                    last;
+        private int                        read, added;
+
+        LoadSink (boolean _bulk)
+        {
+            bulk = _bulk;
+        } // constructor
+
+        public void put (Comparable [] tup)
+        {
+            KeyType tupKey = keyOf (tup);
+            int c = last == null ? -1 : last.compareTo (tupKey);
+            if (c == 0) return;                                 // repeated key: keep the first
+            if (c > 0) throw new IllegalStateException ("Table.load: keys out of order at " + tupKey);
+            last = tupKey;
+            read++;
+
+            if (! bulk) {
+                if (keyBloom.mightContain (tupKey.hashCode ()) && hasKey (tupKey)) return;
+                append (tupKey, tup);
+                added++;
+                return;
+            } // if
+
+            for (Map.Entry <Integer, BitmapIndex> e : bitmaps.entrySet ()) {
+                e.getValue ().add (tuples.size () + batch.size (), tup [e.getKey ()]);
+            } // for
+            batch.add (tup);
+            keys.add (tupKey);
+            rows.add (tup);
+            stats.add (tup);
+            added++;
+            if (batch.size () == BATCH) flush ();
+        } // put
+
+        /***********************************************************************
+         * Write the last batch and, for an empty table, build the index and
+         * the Bloom filters.
+         */
+        void finish ()
+        {
+            if (! bulk) return;
+            flush ();
+            index.putAll (new SortedEntries <> (keys, rows));      // linear bottom-up build
+            version += added;
+
+            keyBloom = new BloomFilter (Math.max (1024, 2 * keys.size ()));
+            for (KeyType k : keys) keyBloom.add (k.hashCode ());
+            for (Map.Entry <Integer, BloomFilter> e : colBloom.entrySet ()) {
+                e.setValue (columnBloom (e.getKey (), 2 * index.size ()));
+            } // for
+        } // finish
+
+        private void flush ()
+        {
+            tuples.addAll (batch);                              // one sequential write per batch
+            batch.clear ();
+        } // flush
+
+    } // LoadSink class
+
+    /***************************************************************************
+     * Extract the primary key of the tuple.
+     * @param tup  the tuple (in this table's attribute order)
+     * @return  the key formed from the tuple's key attribute values
+     */
+    private KeyType keyOf (Comparable [] tup)
+    {
+        Comparable [] keyVal = new Comparable [key.length];
+        int []        cols   = match (key);
+        for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
+        return KeyType.of (keyVal);
+    } // keyOf
+
+    /***************************************************************************
+     * Append a tuple that is already known to conform to this table's schema,
+     * keeping the index in sync (used when materializing operator results).
+     * @param tup  the array of attribute values forming the tuple
+     */
+    void append (Comparable [] tup)
+    {
+        append (keyOf (tup), tup);
+    } // append
+
+    /***************************************************************************
+     * Append a tuple whose key is already known, keeping the index and the
+     * statistics in sync.
+     * @param tupKey  the key of the tuple
+     * @param tup     the array of attribute values forming the tuple
+     */
+    void append (KeyType tupKey, Comparable [] tup)
+    {
+        tuples.add (tup);
+        index.put (tupKey, tup);
+        if (stats != null) stats.add (tup);
+        version++;
+
+        if (keyBloom.full ()) {
+            keyBloom = new BloomFilter (2 * keyBloom.capacity ());
+            for (KeyType k : index.keySet ()) keyBloom.add (k.hashCode ());
+        } else {
+            keyBloom.add (tupKey.hashCode ());
+        } // if
+        for (Map.Entry <Integer, BloomFilter> e : colBloom.entrySet ()) {
+            if (e.getValue ().full ()) e.setValue (columnBloom (e.getKey (), 2 * e.getValue ().capacity ()));
+            else if (tup [e.getKey ()] != null) e.getValue ().add (tup [e.getKey ()].hashCode ());
+        } // for
+        for (Map.Entry <Integer, BitmapIndex> e : bitmaps.entrySet ()) e.getValue ().add (tuples.size () - 1, tup [e.getKey ()]);
+    } // append
+
+    /***************************************************************************
+     * Append the tuples of runs sorted on their keys (e.g., the partition
+     * outputs of a parallel join).  For an empty temporary table, the runs are
+     * merged and the index is built bottom-up rather than a tuple at a time.
+     * Of tuples with equal keys, the last one is kept, as with append.
+     * @param runs  the runs of (key, tuple) entries, each sorted on the key
+     */
+    void appendRuns (List <List <Map.Entry <KeyType, Comparable []>>> runs)
+    {
+        if (! (index instanceof SlotIndex) || ! index.isEmpty () || ! colBloom.isEmpty () || ! bitmaps.isEmpty ()) {
+            for (List <Map.Entry <KeyType, Comparable []>> run : runs) {
+                for (Map.Entry <KeyType, Comparable []> e : run) append (e.getKey (), e.getValue ());
+            } // for
+            return;
+        } // if
+
+        int n = 0;
+        for (List <Map.Entry <KeyType, Comparable []>> run : runs) n += run.size ();
+        List <KeyType>       keys = new ArrayList <> (n);
+        List <Comparable []> rows = new ArrayList <> (n);
+
+        // k-way merge: cursor = {run, position}, ties go to the earlier run
+        PriorityQueue <int []> heads = new PriorityQueue <> ((a, b) -> {
+            int c = runs.get (a [0]).get (a [1]).getKey ().compareTo (runs.get (b [0]).get (b [1]).getKey ());
+            return c != 0 ? c : Integer.compare (a [0], b [0]);
+        });
+        for (int r = 0; r < runs.size (); r++) if (! runs.get (r).isEmpty ()) heads.add (new int [] { r, 0 });
+        while (! heads.isEmpty ()) {
+            int [] at = heads.poll ();
+            Map.Entry <KeyType, Comparable []> e = runs.get (at [0]).get (at [1]);
+            if (! keys.isEmpty () && keys.get (keys.size () - 1).equals (e.getKey ())) {
+                rows.set (rows.size () - 1, e.getValue ());      // repeated key: keep the last
+            } else {
+                keys.add (e.getKey ());
+                rows.add (e.getValue ());
+            } // if
+            if (++at [1] < runs.get (at [0]).size ()) heads.add (at);
+        } // while
+
+        int first = tuples.size ();
+        tuples.addAll (rows);
+        ((SlotIndex) index).putSorted (keys, first);            // linear bottom-up build
+        if (stats != null) for (Comparable [] tup : rows) stats.add (tup);
+        version += rows.size ();
+
+        keyBloom = new BloomFilter (Math.max (1024, 2 * keys.size ()));
+        for (KeyType k : keys) keyBloom.add (k.hashCode ());
+    } // appendRuns
+
+    /***************************************************************************
+     * Keep a Bloom filter on the given column, so that joins probing this table
+     * on it skip the values it definitely lacks.  (The primary key always has
+     * one, which also serves a single-attribute key column.)
+     * #usage studio.addBloom ("name")
+     * @param attr  the attribute name of the column
+     */
+    public void addBloom (String attr)
+    {
+        int col = columnPos (attr);
+        if (col == -1) throw new IllegalArgumentException ("Table.addBloom: no attribute " + attr + " in " + name);
+        colBloom.put (col, columnBloom (col, 2 * index.size ()));
+    } // addBloom
+
+    /***************************************************************************
+     * Keep a bitmap index on the given (low-cardinality) column, mapping each
+     * of its values to the slots of the records holding it.  Selections whose
+     * conditions test the column for equality or inequality with constants
+     * then fetch only the candidate records.
+     * #usage movieStar.addBitmapIndex ("gender")
+     * @param attr  the attribute name of the column
+     */
+    public void addBitmapIndex (String attr)
+    {
+        int col = columnPos (attr);
+        if (col == -1) throw new IllegalArgumentException ("Table.addBitmapIndex: no attribute " + attr + " in " + name);
+        BitmapIndex bi = new BitmapIndex ();
+        for (int slot = 0; slot < tuples.size (); slot++) bi.add (slot, tuples.get (slot) [col]);
+        bitmaps.put (col, bi);
+    } // addBitmapIndex
+
+    /***************************************************************************
+     * Build a Bloom filter over the values of a column.
+     * @param col       the column position
+     * @param capacity  the number of values to size it for
+     * @return  the Bloom filter
+     */
+    private BloomFilter columnBloom (int col, int capacity)
+    {
+        BloomFilter bloom = new BloomFilter (capacity);
+        for (Comparable [] tup : index.values ()) if (tup [col] != null) bloom.add (tup [col].hashCode ());
+        return bloom;
+    } // columnBloom
+
+    /***************************************************************************
+     * Determine whether a Bloom filter covers the given column (a chosen column,
+     * or the single-attribute primary key).
+     * @param col  the column position
+     * @return  whether mayContain can rule values out for the column
+     */
+    boolean hasBloom (int col)
+    {
+        return colBloom.containsKey (col) || (key.length == 1 && columnPos (key [0]) == col);
+    } // hasBloom
+
+    /***************************************************************************
+     * Determine whether some tuple may have the given value in the column.
+     * @param col    the column position
+     * @param value  the value
+     * @return  false if no tuple has the value in the column
+     */
+    boolean mayContain (int col, Comparable value)
+    {
+        BloomFilter bloom = colBloom.get (col);
+        if (bloom != null)                                 return bloom.mightContain (value.hashCode ());
+        if (key.length == 1 && columnPos (key [0]) == col) return keyBloom.mightContain (value.hashCode ());
+        return true;
+    } // mayContain
+
+    /***************************************************************************
+     * Return the stored tuples in the order they were added (including tuples
+     * whose key repeats, which the index holds only once).
+     * @return  the tuples
+     */
+    List <Comparable []> tuples ()
+    {
+        return tuples;
+    } // tuples
+
+    /***************************************************************************
+     * Return a pipelined scan over this table's tuples (in key order, or for a
+     * result of orderBy in the order it was sorted in).  Further
+     * operators may be chained onto the scan; tuples stream through the chain
+     * and nothing is stored until the result is materialized.
+     * #usage movie.scan ().select ("year > 1979").project ("title year").materialize ()
+     * @return  the scan operator
+     */
+    public Operator scan ()
+    {
+        return new Operator.Scan (this, attribute, domain, key, ordered ? tuples : index.values (), ! ordered);
+    } // scan
+
+    /***************************************************************************
+     * Look up the tuple with the given key in the index.
+     * @param tupKey  the key to look up
+     * @return  the tuple, or null if there is none with that key
+     */
+    Comparable [] lookup (KeyType tupKey)
+    {
+        metrics.lookup ();
+        return index.get (tupKey);
+    } // lookup
+
+    /***************************************************************************
+     * Determine whether the index has the given key.
+     * @param tupKey  the key to look up
+     * @return  whether some tuple has that key
+     */
+    private boolean hasKey (KeyType tupKey)
+    {
+        metrics.lookup ();
+        return index.containsKey (tupKey);
+    } // hasKey
+
+    /***************************************************************************
+     * Record a call of an operator on this table, in the table's metrics and
+     * the operator's.
+     * @param op       the name of the operator
+     * @param start    the time the call started (System.nanoTime)
+     * @param rowsIn   the number of rows read
+     * @param rowsOut  the number of rows produced
+     */
+    private void record (String op, long start, long rowsIn, long rowsOut)
+    {
+        long nanos = System.nanoTime () - start;
+        metrics.call (rowsIn, rowsOut, nanos);
+        Metrics.forOperator (op).call (rowsIn, rowsOut, nanos);
+    } // record
+
+    /***************************************************************************
+     * Record a call of an operator on this table that produced a result table.
+     * @param op      the name of the operator
+     * @param start   the time the call started (System.nanoTime)
+     * @param rowsIn  the number of rows read
+     * @param result  the result table
+     * @return  the result table (for returning it)
+     */
+    private Table done (String op, long start, long rowsIn, Table result)
+    {
+        record (op, start, rowsIn, result.tuples.size ());
+        return result;
+    } // done
+
+    /***************************************************************************
+     * Get the metrics of this table (shared by all temporary tables).
+     * @return  the table's metrics
+     */
+    public Metrics getMetrics ()
+    {
+        return metrics;
+    } // getMetrics
+
+    /***************************************************************************
+     * Generate a fresh name for a temporary (result) table.
+     * @param base  the name of the table the result is derived from
+     * @return  the temporary table name
+     */
+    static String tempName (String base)
+    {
+        return base + count.getAndIncrement ();
+    } // tempName
+
+    /***************************************************************************
+     * Get the statistics of this table (row count and, per column, min/max,
+     * null count, approximate distinct count and an equi-depth histogram).
+     * They are kept up to date by insert; see also analyze.  A temporary table
+     * computes them only when first asked for, from the tuples added so far,
+     * so results that are never examined do not pay for them.
+     * @return  the table statistics
+     */
+    public TableStats getStats ()
+    {
+        if (stats == null) {
+            stats = new TableStats (attribute);
+            for (Comparable [] tup : tuples) stats.add (tup);
+        } // if
+        return stats;
+    } // getStats
+
+    /***************************************************************************
+     * Return the number of tuples in the table (one per key), without computing
+     * statistics.
+     * @return  the number of tuples
+     */
+    public int size ()
+    {
+        return index.size ();
+    } // size
+
+    /***************************************************************************
+     * Recompute the statistics of this table from all its tuples, building
+     * exact equi-depth histograms.
+     * #usage movie.analyze ()
+     * @return  the refreshed table statistics
+     */
+    public TableStats analyze ()
+    {
+        if (stats == null) stats = new TableStats (attribute);
+        stats.analyze (index.values ());
+        return stats;
+    } // analyze
+
+    /***************************************************************************
+     * Close the table's storage.  For a temporary table, this releases its
+     * in-memory tuples and deletes its spill file (if any).
+     */
+    public void close ()
+    {
+        if (tuples instanceof TempList) ((TempList) tuples).close ();
+        else                            ((FileList) tuples).close ();
+        index.clear ();
+        metrics.unregister ();
+    } // close
+
+    /***************************************************************************
+     * Get the version of the table's contents, which every insert bumps.
+     * @return  the table's version
+     */
+    public long getVersion ()
+    {
+        return version;
+    } // getVersion
+
+    /***************************************************************************
+     * Identify this table and the version of its contents, for keying cached
+     * results (see ResultCache).
+     * @return  the name, number and version of the table
+     */
+    String cacheId ()
+    {
+        return name + "#" + id + "@" + version;
+    } // cacheId
+
     /***************************************************************************
      * Get the name of the table.
      * @return  the table's name
@@ -452,6 +1255,7 @@ public class Table
      */
     public void print ()
     {
+        Log.flush ();                                     // keep the log in order with the output
         out.println ("\n Table " + name);
 
         out.print ("|-");
@@ -511,8 +1315,20 @@ public class Table
      */
     private int columnPos (String column)
     {
-        for (int j = 0; j < attribute.length; j++) {
-           if (column.equals (attribute [j])) return j;
+        return columnPos (column, attribute);
+    } // columnPos
+
+    /***************************************************************************
+     * Return the column position for the given column/attribute name within
+     * the given attribute names.
+     * @param column  the given column/attribute name
+     * @param attr    the attribute names to search
+     * @return  the column index position
+     */
+    static int columnPos (String column, String [] attr)
+    {
+        for (int j = 0; j < attr.length; j++) {
+           if (column.equals (attr [j])) return j;
         } // for
 
         //out.println ("columnPos: error - " + column + " not found");
@@ -543,8 +1359,22 @@ public class Table
      * @return  whether to keep the tuple
      * @author Sidi Liu
      */
-    @SuppressWarnings("unchecked")
     private boolean evalTup (String [] postfix, Comparable [] tup)
+    {
+        return evalTup (postfix, tup, attribute, domain);
+    } // evalTup
+
+    /***************************************************************************
+     * Check whether the tuple satisfies the condition, given the schema of the
+     * tuple rather than that of this table (used by pipelined operators).
+     * @param postfix  the postfix expression for the condition
+     * @param tup      the tuple to check
+     * @param attr     the attribute names of the tuple
+     * @param dom      the attribute domains of the tuple
+     * @return  whether to keep the tuple
+     */
+    @SuppressWarnings("unchecked")
+    static boolean evalTup (String [] postfix, Comparable [] tup, String [] attr, Class [] dom)
     {
     	if (postfix == null) return true;
         Stack <Comparable <?>> s = new Stack <> ();
@@ -578,12 +1408,12 @@ public class Table
         	{
         		tempOperand2=s.pop();
         		tempOperand1=s.pop();
-        		iattribute = columnPos((String)tempOperand2);
+        		iattribute = columnPos((String)tempOperand2, attr);
         		
-        		if((columnPos((String)tempOperand2)!=-1)&&(columnPos((String)tempOperand1)!=-1))  
+        		if((columnPos((String)tempOperand2, attr)!=-1)&&(columnPos((String)tempOperand1, attr)!=-1))  
         		{
-        			Operand1 = tup[columnPos((String)tempOperand1)];
-        			Operand2 = tup[columnPos((String)tempOperand2)];
+        			Operand1 = tup[columnPos((String)tempOperand1, attr)];
+        			Operand2 = tup[columnPos((String)tempOperand2, attr)];
         		}
         		else if(iattribute != -1) 
         		{
@@ -591,7 +1421,7 @@ public class Table
         			
         			
         			if (!(Operand2 instanceof Character) ) {  
-        				Operand1=String2Type.cons(domain[iattribute], (String)tempOperand1);						
+        				Operand1=String2Type.cons(dom[iattribute], (String)tempOperand1);						
 					}
         			
         			else {
@@ -601,11 +1431,11 @@ public class Table
         		}
         		else 
         		{
-        			int temp = columnPos((String)tempOperand1);
+        			int temp = columnPos((String)tempOperand1, attr);
         			Operand1=tup[temp];
         				
         			if (!(Operand1 instanceof Character)) {
-        				Operand2=String2Type.cons(domain[temp], (String)tempOperand2);
+        				Operand2=String2Type.cons(dom[temp], (String)tempOperand2);
         				
 					}
         			else {
@@ -735,8 +1565,11 @@ public class Table
     	{
     		
             switch (domain [j].getName ()) {
-            case "java.lang.Integer":
             case "java.lang.Short": 
+                tempElement = ByteBuffer.wrap (record, s, 2).getShort ();   // packed into 2 of 4 bytes
+                s = s+4;
+                break;
+            case "java.lang.Integer":
             	byte [] tempByte1 = new byte[4]; 
             	for(int i= 0; i<4;i++)
             	{
@@ -812,7 +1645,7 @@ public class Table
            		}
                
                s = s+2;
-               tempElement = new String(tempByte3);
+               tempElement = new String(tempByte3).charAt(0);
             	break;  
                 
                 
@@ -834,7 +1667,7 @@ public class Table
      * required to store it in a record/byte-buffer.
      * @return  the size of packed-tuples in bytes
      */ 
-    private int tupleSize () 
+    int tupleSize () 
     {
         int s = 0;
 
@@ -941,7 +1774,7 @@ public class Table
      * @author Michael Church
      */
     
-    private static String [] infix2postfix (String condition)
+    static String [] infix2postfix (String condition)
     {
         if (condition == null || condition.trim () == "") return null;
         String [] infix   = condition.split (" ");        // tokenize the infix
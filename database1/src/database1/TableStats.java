@@ -0,0 +1,289 @@
+
+/*******************************************************************************
+ * @file  TableStats.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class holds the statistics of a table: its row count and, for each column,
+ * the min/max, null count, approximate distinct count (HyperLogLog) and an
+ * equi-depth histogram.  Statistics are maintained incrementally as tuples are
+ * added; histograms are then built from a reservoir sample of each column.
+ * Table.analyze () recomputes everything from the full data, with exact
+ * histograms.  The estimates support choosing access paths and join orders.
+ */
+public class TableStats
+{
+    /** Number of buckets in each histogram.
+     */
+    private static final int BUCKETS = 32;
+
+    /** Size of the reservoir sample kept for each column.
+     */
+    private static final int SAMPLE = 1024;
+
+    /** Attribute names of the table.
+     */
+    private final String [] attribute;
+
+    /** Number of rows added.
+     */
+    private long rows;
+
+    /** Per-column statistics.
+     */
+    private final ColumnStats [] column;
+
+    /** Random source for reservoir sampling (seeded, so runs are repeatable).
+     */
+    private final Random rand = new Random (1);
+
+    /***************************************************************************
+     * Construct empty statistics for a table with the given attributes.
+     * @param _attribute  the attribute names
+     */
+    TableStats (String [] _attribute)
+    {
+        attribute = _attribute;
+        column    = new ColumnStats [attribute.length];
+        for (int j = 0; j < column.length; j++) column [j] = new ColumnStats (attribute [j]);
+    } // constructor
+
+    /***************************************************************************
+     * Update the statistics for a tuple added to the table.
+     * @param tup  the tuple added
+     */
+    void add (Comparable [] tup)
+    {
+        rows++;
+        long slot = rows <= SAMPLE ? rows - 1 : (long) (rand.nextDouble () * rows);
+        for (int j = 0; j < column.length; j++) column [j].add (tup [j], slot);
+    } // add
+
+    /***************************************************************************
+     * Recompute the statistics from all the tuples of the table, building exact
+     * equi-depth histograms.
+     * @param tuples  all the tuples of the table
+     */
+    void analyze (Collection <Comparable []> tuples)
+    {
+        rows = 0;
+        for (ColumnStats c : column) c.clear ();
+        for (Comparable [] tup : tuples) add (tup);
+
+        for (int j = 0; j < column.length; j++) {
+            List <Comparable> vals = new ArrayList <> (tuples.size ());
+            for (Comparable [] tup : tuples) if (tup [j] != null) vals.add (tup [j]);
+            column [j].buildHistogram (vals);
+        } // for
+    } // analyze
+
+    /***************************************************************************
+     * Return the number of rows in the table.
+     * @return  the row count
+     */
+    public long rows ()
+    {
+        return rows;
+    } // rows
+
+    /***************************************************************************
+     * Return the statistics of the named column.
+     * @param attr  the attribute name
+     * @return  the column statistics (null if there is no such column)
+     */
+    public ColumnStats column (String attr)
+    {
+        int j = Table.columnPos (attr, attribute);
+        return j < 0 ? null : column [j];
+    } // column
+
+    /***************************************************************************
+     * Estimate the fraction of rows satisfying "attr op value".
+     * @param attr   the attribute name
+     * @param op     the comparison operator ("==", "!=", "<", "<=", ">", ">=")
+     * @param value  the value compared with (of the attribute's domain)
+     * @return  the estimated selectivity in [0, 1]
+     */
+    public double selectivity (String attr, String op, Comparable value)
+    {
+        ColumnStats c = column (attr);
+        return c == null ? 1.0 : c.selectivity (op, value);
+    } // selectivity
+
+    /***************************************************************************
+     * Convert the statistics to a string.
+     * @return  the string representation
+     */
+    public String toString ()
+    {
+        StringBuilder sb = new StringBuilder ("rows = " + rows);
+        for (ColumnStats c : column) sb.append ("\n  ").append (c);
+        return sb.toString ();
+    } // toString
+
+    /***************************************************************************
+     * This class holds the statistics of one column.
+     */
+    public class ColumnStats
+    {
+        private final String       name;
+        private Comparable         min;
+        private Comparable         max;
+        private long               nulls;
+        private final HyperLogLog  hll = new HyperLogLog ();
+        private final Comparable [] sample = new Comparable [SAMPLE];
+        private int                sampled;
+        private Comparable []      bounds;          // BUCKETS + 1 bucket bounds
+        private boolean            exact;           // bounds built from the full data
+        private boolean            stale = true;    // bounds out of date with the sample
+
+        ColumnStats (String _name)
+        {
+            name = _name;
+        } // constructor
+
+        @SuppressWarnings("unchecked")
+        void add (Comparable v, long slot)
+        {
+            if (v == null) { nulls++; return; }
+            if (min == null || v.compareTo (min) < 0) min = v;
+            if (max == null || v.compareTo (max) > 0) max = v;
+            hll.add (v);
+            if (slot < SAMPLE) {
+                sample [(int) slot] = v;
+                if (sampled <= slot) sampled = (int) slot + 1;
+                stale = true;
+                exact = false;
+            } // if
+        } // add
+
+        void clear ()
+        {
+            min = max = null;
+            nulls = 0;
+            hll.clear ();
+            Arrays.fill (sample, null);
+            sampled = 0;
+            bounds  = null;
+            exact   = false;
+            stale   = true;
+        } // clear
+
+        /***********************************************************************
+         * Build the equi-depth histogram bounds from the given values.
+         */
+        @SuppressWarnings("unchecked")
+        void buildHistogram (List <Comparable> vals)
+        {
+            Collections.sort (vals);
+            int n = vals.size ();
+            if (n == 0) { bounds = null; }
+            else {
+                bounds = new Comparable [BUCKETS + 1];
+                for (int b = 0; b < BUCKETS; b++) bounds [b] = vals.get ((int) ((long) b * n / BUCKETS));
+                bounds [BUCKETS] = vals.get (n - 1);
+            } // if
+            exact = true;
+            stale = false;
+        } // buildHistogram
+
+        /** @return  the column name */
+        public String name ()            { return name; }
+
+        /** @return  the minimum value (null if none) */
+        public Comparable min ()         { return min; }
+
+        /** @return  the maximum value (null if none) */
+        public Comparable max ()         { return max; }
+
+        /** @return  the number of null values */
+        public long nulls ()             { return nulls; }
+
+        /***********************************************************************
+         * Return the approximate number of distinct (non-null) values.
+         * @return  the distinct count estimate
+         */
+        public long distinct ()
+        {
+            return Math.max (min == null ? 0 : 1, Math.min (hll.estimate (), rows - nulls));
+        } // distinct
+
+        /***********************************************************************
+         * Return the equi-depth histogram bounds: bucket b holds (about) the
+         * same number of rows, with values between bounds [b] and bounds [b+1].
+         * @return  the bucket bounds (null if the column has no values)
+         */
+        public Comparable [] histogram ()
+        {
+            if (stale && ! exact) {
+                List <Comparable> vals = new ArrayList <> (sampled);
+                for (int i = 0; i < sampled; i++) vals.add (sample [i]);
+                buildHistogram (vals);
+                exact = false;
+            } // if
+            return bounds;
+        } // histogram
+
+        /***********************************************************************
+         * Estimate the fraction of rows satisfying "column op value".
+         */
+        @SuppressWarnings("unchecked")
+        public double selectivity (String op, Comparable value)
+        {
+            if (rows == 0) return 0.0;
+            double nonNull = (double) (rows - nulls) / rows;
+            if (min == null) return 0.0;
+
+            boolean outside = value.compareTo (min) < 0 || value.compareTo (max) > 0;
+            double  eq      = outside ? 0.0 : nonNull / distinct ();
+            double  below   = nonNull * fractionBelow (value);
+            double  sel;
+            switch (op) {
+            case "==": sel = eq;                    break;
+            case "!=": sel = nonNull - eq;          break;
+            case "<":  sel = below;                 break;
+            case "<=": sel = below + eq;            break;
+            case ">":  sel = nonNull - below - eq;  break;
+            case ">=": sel = nonNull - below;       break;
+            default:   sel = 1.0;                   break;
+            } // switch
+            return Math.max (0.0, Math.min (1.0, sel));
+        } // selectivity
+
+        /***********************************************************************
+         * Estimate the fraction of non-null values less than value, from the
+         * histogram (interpolating within a bucket for numeric values).
+         */
+        @SuppressWarnings("unchecked")
+        private double fractionBelow (Comparable value)
+        {
+            Comparable [] b = histogram ();
+            if (b == null || value.compareTo (b [0]) <= 0) return 0.0;
+            if (value.compareTo (b [BUCKETS]) > 0) return 1.0;
+            int i = 0;
+            while (i < BUCKETS - 1 && value.compareTo (b [i + 1]) > 0) i++;
+            double within = 0.5;
+            if (value instanceof Number && b [i] instanceof Number) {
+                double lo = ((Number) b [i]).doubleValue (), hi = ((Number) b [i + 1]).doubleValue ();
+                within = hi > lo ? (((Number) value).doubleValue () - lo) / (hi - lo) : 0.5;
+            } // if
+            return (i + Math.max (0.0, Math.min (1.0, within))) / BUCKETS;
+        } // fractionBelow
+
+        /***********************************************************************
+         * Convert the column statistics to a string.
+         */
+        public String toString ()
+        {
+            return name + ": min = " + min + ", max = " + max + ", nulls = " + nulls +
+                   ", distinct ~ " + distinct () + (exact ? " (analyzed)" : "");
+        } // toString
+
+    } // ColumnStats class
+
+} // TableStats class
+
@@ -0,0 +1,195 @@
+
+/*******************************************************************************
+ * @file  TempList.java
+ */
+
+package database1;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*******************************************************************************
+ * This class provides the storage for temporary (result) tables.  Tuples are
+ * kept in memory until their packed size exceeds the memory budget, at which
+ * point they are spilled to a FileList on a temporary file and all further
+ * tuples go to that file.  The temporary file is deleted when the list is closed
+ * (or, failing that, once the list is no longer reachable or the JVM exits).
+ * The owning table's index holds only keys and slots (see SlotIndex) and reads
+ * spilled tuples back from the file, so the budget bounds the heap taken by the
+ * tuples of a large result.  If the temporary file cannot be created, the
+ * tuples stay in memory and spilling is not tried again.
+ */
+public class TempList
+       extends AbstractList <Comparable []>
+       implements List <Comparable []>, RandomAccess
+{
+    /** Memory budget (in bytes of packed tuples) for each temporary list.
+     *  May be set with -Ddatabase1.tempBudget=<bytes>.
+     */
+    private static long budget = Long.getLong ("database1.tempBudget", 4L << 20);
+
+    /** Deletes the spill files of lists that were never closed.
+     */
+    private static final Cleaner cleaner = Cleaner.create ();
+
+    /** The spill files not yet deleted, which a shutdown hook deletes (unlike
+     *  File.deleteOnExit, a file leaves the set once deleted).
+     */
+    private static final Set <File> live = ConcurrentHashMap.newKeySet ();
+
+    static {
+        Runtime.getRuntime ().addShutdownHook (new Thread (() -> { for (File f : live) f.delete (); }));
+    } // static
+
+    /** The table it is used to store.
+     */
+    private final Table table;
+
+    /** The number bytes required to store a "packed tuple"/record.
+     */
+    private final int recordSize;
+
+    /** The in-memory tuples (null once spilled).
+     */
+    private List <Comparable []> mem = new ArrayList <> ();
+
+    /** The spill file and the file list stored in it (null until spilled).
+     */
+    private File     spillFile;
+    private FileList spill;
+
+    /** Deletes the spill file (registered with the cleaner once spilled).
+     */
+    private Cleaner.Cleanable deleter;
+
+    /** Whether spilling failed (the tuples then stay in memory).
+     */
+    private boolean spillFailed;
+
+    /***************************************************************************
+     * Construct a TempList.
+     * @param _table       the table it is used to store
+     * @param _recordSize  the size of tuple in bytes.
+     */
+    public TempList (Table _table, int _recordSize)
+    {
+        table      = _table;
+        recordSize = _recordSize;
+    } // constructor
+
+    /***************************************************************************
+     * Set the memory budget for temporary lists.
+     * @param bytes  the budget in bytes of packed tuples
+     */
+    public static void setBudget (long bytes)
+    {
+        budget = bytes;
+    } // setBudget
+
+    /***************************************************************************
+     * Add a tuple, spilling to disk if the memory budget is exceeded.
+     * @param tuple  the tuple to add
+     * @return  whether the addition succeeded
+     */
+    public boolean add (Comparable [] tuple)
+    {
+        if (spill != null) return spill.add (tuple);
+
+        mem.add (tuple);
+        if (! spillFailed && (long) mem.size () * recordSize > budget) spill ();
+        return true;
+    } // add
+
+    /***************************************************************************
+     * Add the tuples in order, spilling to disk if the memory budget is
+     * exceeded.  Once spilled, they are written a page at a time.
+     * @param tuples  the tuples to add
+     * @return  whether any tuple was added
+     */
+    @Override
+    public boolean addAll (Collection <? extends Comparable []> tuples)
+    {
+        if (spill != null) return spill.addAll (tuples);
+
+        mem.addAll (tuples);
+        if (! spillFailed && (long) mem.size () * recordSize > budget) spill ();
+        return ! tuples.isEmpty ();
+    } // addAll
+
+    /***************************************************************************
+     * Get the ith tuple.
+     * @param i  the index of the tuple to get
+     * @return  the ith tuple
+     */
+    public Comparable [] get (int i)
+    {
+        return spill != null ? spill.get (i) : mem.get (i);
+    } // get
+
+    /***************************************************************************
+     * Return the number of tuples.
+     * @return  the number of tuples
+     */
+    public int size ()
+    {
+        return spill != null ? spill.size () : mem.size ();
+    } // size
+
+    /***************************************************************************
+     * Return whether the tuples have been spilled to disk.
+     * @return  whether spilled
+     */
+    public boolean isSpilled ()
+    {
+        return spill != null;
+    } // isSpilled
+
+    /***************************************************************************
+     * Move the in-memory tuples to a temporary file.
+     */
+    private void spill ()
+    {
+        try {
+            spillFile = File.createTempFile (table.getName () + "_", ".tmp");
+            File file = spillFile;                       // the action must not refer to this list
+            live.add (file);
+            deleter   = cleaner.register (this, () -> { file.delete (); live.remove (file); });
+        } catch (IOException ex) {
+            if (Log.enabled (Log.INFO)) Log.write ("TempList.spill: unable to create temp file - " + ex);
+            spillFailed = true;                          // keep the tuples in memory
+            return;
+        } // try
+
+        FileList list = new FileList (table, recordSize, spillFile);
+        try {
+            list.addAll (mem);
+        } catch (RuntimeException ex) {
+            list.close ();
+            deleter.clean ();
+            throw ex;
+        } // try
+        spill = list;
+        mem   = null;
+    } // spill
+
+    /***************************************************************************
+     * Release the tuples and delete the temporary file (if any).
+     */
+    public void close ()
+    {
+        if (spill != null) {
+            try {
+                spill.close ();
+            } finally {
+                deleter.clean ();
+                if (spillFile.exists () && Log.enabled (Log.INFO)) Log.write ("TempList.close: unable to delete " + spillFile);
+                spill = null;
+            } // try
+        } // if
+        mem = new ArrayList <> ();
+    } // close
+
+} // TempList class
+
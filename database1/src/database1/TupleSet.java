@@ -0,0 +1,130 @@
+
+/*******************************************************************************
+ * @file  TupleSet.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class provides a compact set of tuples, compared by content.  It is an
+ * open-addressing (linear probing) hash table holding each tuple's hash code
+ * (its fingerprint) in a primitive array alongside a reference to the tuple.
+ * Probes compare fingerprints first and compare the attribute values only when
+ * the fingerprints collide.
+ */
+class TupleSet
+{
+    /** Fingerprints of the stored tuples (valid where tuple [i] != null).
+     */
+    private int [] hash;
+
+    /** The stored tuples (null marks an empty slot).
+     */
+    private Comparable [][] tuple;
+
+    /** Number of tuples stored.
+     */
+    private int size;
+
+    /***************************************************************************
+     * Construct an empty set sized for the expected number of tuples.
+     * @param expected  the expected number of tuples
+     */
+    TupleSet (int expected)
+    {
+        int capacity = 16;
+        while (capacity < expected * 2) capacity <<= 1;
+        hash  = new int [capacity];
+        tuple = new Comparable [capacity][];
+    } // constructor
+
+    /***************************************************************************
+     * Add a tuple to the set, unless an equal tuple is already present.
+     * @param tup  the tuple to add
+     * @return  whether the tuple was added
+     */
+    boolean add (Comparable [] tup)
+    {
+        int h    = fingerprint (tup);
+        int mask = tuple.length - 1;
+        int i    = h & mask;
+        for ( ; tuple [i] != null; i = (i + 1) & mask) {
+            if (hash [i] == h && same (tuple [i], tup)) return false;
+        } // for
+        hash [i]  = h;
+        tuple [i] = tup;
+        if (++size * 2 > tuple.length) grow ();
+        return true;
+    } // add
+
+    /***************************************************************************
+     * Determine whether an equal tuple is in the set.
+     * @param tup  the tuple to look for
+     * @return  whether it is present
+     */
+    boolean contains (Comparable [] tup)
+    {
+        int h    = fingerprint (tup);
+        int mask = tuple.length - 1;
+        for (int i = h & mask; tuple [i] != null; i = (i + 1) & mask) {
+            if (hash [i] == h && same (tuple [i], tup)) return true;
+        } // for
+        return false;
+    } // contains
+
+    /***************************************************************************
+     * Return the number of tuples in the set.
+     * @return  the size
+     */
+    int size ()
+    {
+        return size;
+    } // size
+
+    /***************************************************************************
+     * Double the capacity and re-insert the tuples (reusing their fingerprints).
+     */
+    private void grow ()
+    {
+        int []          oHash  = hash;
+        Comparable [][] oTuple = tuple;
+        hash  = new int [oHash.length * 2];
+        tuple = new Comparable [oTuple.length * 2][];
+        int mask = tuple.length - 1;
+        for (int o = 0; o < oTuple.length; o++) {
+            if (oTuple [o] == null) continue;
+            int i = oHash [o] & mask;
+            while (tuple [i] != null) i = (i + 1) & mask;
+            hash [i]  = oHash [o];
+            tuple [i] = oTuple [o];
+        } // for
+    } // grow
+
+    /***************************************************************************
+     * Compute the fingerprint of a tuple from the hash codes of its values.
+     * @param tup  the tuple
+     * @return  the fingerprint
+     */
+    static int fingerprint (Comparable [] tup)
+    {
+        int h = 1;
+        for (Comparable v : tup) h = 31 * h + v.hashCode ();
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    } // fingerprint
+
+    /***************************************************************************
+     * Determine whether two tuples have equal values.
+     * @param t1  the first tuple
+     * @param t2  the second tuple
+     * @return  whether they are equal
+     */
+    static boolean same (Comparable [] t1, Comparable [] t2)
+    {
+        return t1 == t2 || Arrays.equals (t1, t2);
+    } // same
+
+} // TupleSet class
+
@@ -0,0 +1,223 @@
+
+/*******************************************************************************
+ * @file  WorkloadDriver.java
+ */
+
+package database1;
+
+import static java.lang.System.out;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*******************************************************************************
+ * This class runs a mixed workload over a generated Movie Database (see
+ * MovieGenerator) from several threads and reports the throughput and latency
+ * percentiles of each kind of operation:
+ *   read    a parameterized selection on movie (studioName == ? & year > ?)
+ *   insert  a new movie and a starsIn tuple casting an existing star in it
+ *   join    the movies of a year joined with their studios
+ * Each table has a read/write lock: reads and joins share the read locks of
+ * the tables they use, so they run in parallel, while an insert holds the write
+ * locks of movie and starsIn, excluding every other operation on movie while it
+ * runs.  Locks are taken in a fixed order (by table position) to avoid
+ * deadlock.  Arguments are name=value pairs, e.g.,
+ *   java database1.WorkloadDriver threads=8 seconds=30 scale=2 skew=0.8 seed=42 mix=70:20:10
+ * where mix gives the percentages of reads, inserts and joins.
+ */
+public class WorkloadDriver
+{
+    private static final int READ = 0, INSERT = 1, JOIN = 2;
+    private static final String [] OPS = { "read", "insert", "join" };
+
+    private final Table []          db;
+    private final ReentrantReadWriteLock [] locks;
+    private final MovieGenerator    gen;
+    private final MovieGenerator.Zipf studio, star;
+    private final int []            mix;
+    private final long              seed;
+    private final AtomicInteger     nextMovie;
+    private final Histogram []      latency = { new Histogram (), new Histogram (), new Histogram () };
+
+    /***************************************************************************
+     * Construct a driver over the tables made by a generator.
+     * @param _gen   the generator (already used to make the tables)
+     * @param _db    the generated tables
+     * @param _mix   the percentages of reads, inserts and joins
+     * @param _seed  the seed of each thread's choices (plus the thread number)
+     * @param skew   the Zipf exponent for choosing studios and stars
+     */
+    public WorkloadDriver (MovieGenerator _gen, Table [] _db, int [] _mix, long _seed, double skew)
+    {
+        if (_mix.length != 3 || _mix [READ] + _mix [INSERT] + _mix [JOIN] != 100) {
+            throw new IllegalArgumentException ("WorkloadDriver: the mix must be three percentages adding to 100");
+        } // if
+        gen       = _gen;
+        db        = _db;
+        mix       = _mix;
+        seed      = _seed;
+        studio    = new MovieGenerator.Zipf (gen.studios (), skew);
+        star      = new MovieGenerator.Zipf (gen.stars (), skew);
+        nextMovie = new AtomicInteger (gen.movies ());
+        locks     = new ReentrantReadWriteLock [db.length];
+        for (int t = 0; t < locks.length; t++) locks [t] = new ReentrantReadWriteLock ();
+    } // constructor
+
+    /***************************************************************************
+     * Run the workload.
+     * @param threads  the number of threads
+     * @param seconds  how long to run
+     * @return  the report (one line per kind of operation, then the total)
+     */
+    public String run (int threads, double seconds) throws InterruptedException
+    {
+        final long     end  = System.nanoTime () + (long) (seconds * 1e9);
+        ExecutorService pool = Executors.newFixedThreadPool (threads);
+        List <Future <?>> done = new ArrayList <> ();
+        long start = System.nanoTime ();
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            done.add (pool.submit (() -> work (new Random (seed + id), end)));
+        } // for
+        try {
+            for (Future <?> f : done) f.get ();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException ("WorkloadDriver: an operation failed", ex.getCause ());
+        } finally {
+            pool.shutdownNow ();
+        } // try
+        double elapsed = (System.nanoTime () - start) / 1e9;
+
+        StringBuilder report = new StringBuilder ();
+        long          total  = 0;
+        for (int k = 0; k < OPS.length; k++) {
+            long n = latency [k].count ();
+            total += n;
+            report.append (String.format (" %-7s %10.1f ops/s  %s%n", OPS [k], n / elapsed, latency [k]));
+        } // for
+        report.append (String.format (" %-7s %10.1f ops/s  (%d ops in %.1f s on %d threads)%n", "total",
+                                      total / elapsed, total, elapsed, threads));
+        return report.toString ();
+    } // run
+
+    /***************************************************************************
+     * Run operations until the end time.
+     */
+    private void work (Random rand, long end)
+    {
+        PreparedSelect read;
+        lock (false, MovieGenerator.MOVIE);
+        try {
+            read = db [MovieGenerator.MOVIE].prepare ("studioName == ? & year > ?");
+        } finally {
+            unlock (false, MovieGenerator.MOVIE);
+        } // try
+
+        while (System.nanoTime () < end) {
+            int  p  = rand.nextInt (100);
+            int  op = p < mix [READ] ? READ : p < mix [READ] + mix [INSERT] ? INSERT : JOIN;
+            long t0 = System.nanoTime ();
+            switch (op) {
+            case READ:   read (read, rand); break;
+            case INSERT: insert (rand);     break;
+            default:     join (rand);       break;
+            } // switch
+            latency [op].record (System.nanoTime () - t0);
+        } // while
+    } // work
+
+    private void read (PreparedSelect read, Random rand)
+    {
+        lock (false, MovieGenerator.MOVIE);
+        try {
+            read.execute ("Studio_" + studio.next (rand), 1920 + rand.nextInt (100)).close ();
+        } finally {
+            unlock (false, MovieGenerator.MOVIE);
+        } // try
+    } // read
+
+    private void insert (Random rand)
+    {
+        int           i     = nextMovie.getAndIncrement ();
+        Comparable [] movie = { "Movie_" + i, MovieGenerator.year (i), 60 + rand.nextInt (120),
+                                MovieGenerator.GENRES [rand.nextInt (MovieGenerator.GENRES.length)],
+                                "Studio_" + studio.next (rand), rand.nextInt (gen.execs ()) };
+        lock (true, MovieGenerator.MOVIE, MovieGenerator.STARS_IN);
+        try {
+            db [MovieGenerator.MOVIE].insert (movie);
+            db [MovieGenerator.STARS_IN].insert (new Comparable [] { movie [0], movie [1], "Star_" + star.next (rand) });
+        } finally {
+            unlock (true, MovieGenerator.MOVIE, MovieGenerator.STARS_IN);
+        } // try
+    } // insert
+
+    private void join (Random rand)
+    {
+        lock (false, MovieGenerator.MOVIE, MovieGenerator.STUDIO);
+        try {
+            Table year = db [MovieGenerator.MOVIE].select ("year == " + (1920 + rand.nextInt (100)));
+            year.join ("studioName == name", db [MovieGenerator.STUDIO]).close ();
+            year.close ();
+        } finally {
+            unlock (false, MovieGenerator.MOVIE, MovieGenerator.STUDIO);
+        } // try
+    } // join
+
+    /***************************************************************************
+     * Lock the given tables, in increasing order of their positions.
+     * @param write   whether to take the write locks (else the read locks)
+     * @param tables  the positions of the tables, in increasing order
+     */
+    private void lock (boolean write, int... tables)
+    {
+        for (int t : tables) {
+            if (write) locks [t].writeLock ().lock ();
+            else       locks [t].readLock ().lock ();
+        } // for
+    } // lock
+
+    private void unlock (boolean write, int... tables)
+    {
+        for (int j = tables.length - 1; j >= 0; j--) {
+            if (write) locks [tables [j]].writeLock ().unlock ();
+            else       locks [tables [j]].readLock ().unlock ();
+        } // for
+    } // unlock
+
+    /***************************************************************************
+     * Generate a Movie Database and run a workload over it.
+     * @param args  name=value pairs: threads, seconds, scale, skew, seed, mix
+     */
+    public static void main (String [] args) throws InterruptedException
+    {
+        Map <String, String> opt = new HashMap <> ();
+        for (String arg : args) {
+            String [] nv = arg.split ("=", 2);
+            if (nv.length != 2) throw new IllegalArgumentException ("WorkloadDriver: expected name=value, not " + arg);
+            opt.put (nv [0], nv [1]);
+        } // for
+        int       threads = Integer.parseInt (opt.getOrDefault ("threads", "4"));
+        double    seconds = Double.parseDouble (opt.getOrDefault ("seconds", "10"));
+        double    scale   = Double.parseDouble (opt.getOrDefault ("scale", "1"));
+        double    skew    = Double.parseDouble (opt.getOrDefault ("skew", "0.8"));
+        long      seed    = Long.parseLong (opt.getOrDefault ("seed", "42"));
+        String [] m       = opt.getOrDefault ("mix", "70:20:10").split (":");
+        int []    mix     = new int [m.length];
+        for (int j = 0; j < m.length; j++) mix [j] = Integer.parseInt (m [j]);
+
+        out.printf ("workload: threads = %d, seconds = %s, scale = %s, skew = %s, seed = %d, mix = %s%n",
+                    threads, seconds, scale, skew, seed, String.join (":", m));
+        long           t0  = System.nanoTime ();
+        MovieGenerator gen = new MovieGenerator (seed, scale, skew);
+        Table []       db  = gen.generate ();
+        out.printf ("generated in %.1f s:", (System.nanoTime () - t0) / 1e9);
+        for (Table t : db) out.print (" " + t.getName () + " " + t.getStats ().rows ());
+        out.println ();
+
+        out.print (new WorkloadDriver (gen, db, mix, seed, skew).run (threads, seconds));
+        for (Table t : db) t.close ();
+    } // main
+
+} // WorkloadDriver class
@@ -0,0 +1,104 @@
+
+/*******************************************************************************
+ * @file  ZoneMap.java
+ */
+
+package database1;
+
+import java.util.*;
+
+/*******************************************************************************
+ * This class keeps, for each block of consecutive records in a FileList, the
+ * minimum and maximum value of each numeric and string column.  A condition
+ * whose comparisons cannot hold anywhere in a block's ranges rules out the
+ * whole block (see Condition.mayMatch), so a scan can skip it without reading
+ * or unpacking any of its records.  The summaries are updated as records are
+ * added; they are most selective when the data arrive roughly sorted.
+ */
+class ZoneMap
+{
+    /** Number of records summarized per block.
+     */
+    private final int blockSize;
+
+    /** Per block: the minimum and maximum of each column (null if not tracked).
+     */
+    private final List <Comparable []> min = new ArrayList <> ();
+    private final List <Comparable []> max = new ArrayList <> ();
+
+    /***************************************************************************
+     * Construct an empty zone map.
+     * @param _blockSize  the number of records per block
+     */
+    ZoneMap (int _blockSize)
+    {
+        blockSize = _blockSize;
+    } // constructor
+
+    /***************************************************************************
+     * Update the summary of the block holding the given record slot.
+     * @param slot  the slot (record number) the tuple was written to
+     * @param tup   the tuple
+     */
+    @SuppressWarnings("unchecked")
+    void add (int slot, Comparable [] tup)
+    {
+        int b = slot / blockSize;
+        while (min.size () <= b) {
+            min.add (new Comparable [tup.length]);
+            max.add (new Comparable [tup.length]);
+        } // while
+        Comparable [] lo = min.get (b), hi = max.get (b);
+        for (int j = 0; j < tup.length; j++) {
+            Comparable v = tup [j];
+            if (! (v instanceof Number || v instanceof String)) continue;
+            if (lo [j] == null || v.compareTo (lo [j]) < 0) lo [j] = v;
+            if (hi [j] == null || v.compareTo (hi [j]) > 0) hi [j] = v;
+        } // for
+    } // add
+
+    /***************************************************************************
+     * Return the number of records per block.
+     * @return  the block size
+     */
+    int blockSize ()
+    {
+        return blockSize;
+    } // blockSize
+
+    /***************************************************************************
+     * Return the number of blocks summarized.
+     * @return  the block count
+     */
+    int blocks ()
+    {
+        return min.size ();
+    } // blocks
+
+    /***************************************************************************
+     * Determine whether some record of block b may satisfy the condition.
+     * @param b       the block number
+     * @param cond    the compiled condition
+     * @param params  the parameter values (null if none)
+     * @return  false if no record of the block can satisfy the condition
+     */
+    boolean mayMatch (int b, Condition cond, Comparable [] params)
+    {
+        return cond.mayMatch (min.get (b), max.get (b), params);
+    } // mayMatch
+
+    /***************************************************************************
+     * Convert the zone map to a string (one line per block).
+     * @return  the string representation
+     */
+    public String toString ()
+    {
+        StringBuilder sb = new StringBuilder ();
+        for (int b = 0; b < min.size (); b++) {
+            sb.append ("block ").append (b).append (": ").append (Arrays.toString (min.get (b)))
+              .append (" .. ").append (Arrays.toString (max.get (b))).append ('\n');
+        } // for
+        return sb.toString ();
+    } // toString
+
+} // ZoneMap class